@@ -0,0 +1,163 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * Goal directed (A*) search over the flat cells of a Map (the entry [x][y] is at x*h+y).
+ * The heuristic is the Manhattan distance, on a cyclic map it is the wrap around (torus) distance.
+ * Like BfsKernel, all the buffers are kept between searches and only grow, the open list is a binary heap of primitive keys.
+ * Not thread safe - every Map owns its own kernel.
+ */
+final class AStarKernel {
+    private int[] _g = new int[0];
+    private int[] _parent = new int[0];
+    private int[] _seen = new int[0];
+    private int[] _closed = new int[0];
+    private int _stamp;
+
+    private long[] _heapKeys = new long[64];
+    private int[] _heapNodes = new int[64];
+    private int _heapSize;
+
+    private int _w, _h;
+    private boolean _cyclic;
+    private int _visited;
+
+    /**
+     * A* from src to target.
+     * @return true if there is a path: out then holds a shortest one.
+     */
+    boolean astar(int[] cells, int w, int h, boolean cyclic, int src, int target, int obs, PathBuffer out) {
+        begin(w, h, cyclic);
+        int stamp = _stamp;
+        int[] g = _g, parent = _parent, seen = _seen, closed = _closed;
+        int tx = target / h, ty = target - tx * h;
+
+        g[src] = 0;
+        parent[src] = -1;
+        seen[src] = stamp;
+        _visited = 1;
+        push(heuristic(src / h, src % h, tx, ty), 0, src);
+
+        while (_heapSize > 0) {
+            int cur = _heapNodes[0];
+            int gCur = gOf(_heapKeys[0]);
+            pop();
+            if (closed[cur] == stamp || gCur > g[cur]) continue; // a stale entry
+            closed[cur] = stamp;
+            if (cur == target) {
+                bfsLikePath(target, g[target], parent, out);
+                return true;
+            }
+
+            int x = cur / h, y = cur - x * h;
+            int ng = gCur + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                int nb = BfsKernel.step(x, y, dir, w, h, cyclic);
+                if (nb < 0 || cells[nb] == obs || closed[nb] == stamp) continue;
+                if (seen[nb] != stamp) {
+                    seen[nb] = stamp;
+                    _visited++;
+                } else if (ng >= g[nb]) {
+                    continue;
+                }
+                g[nb] = ng;
+                parent[nb] = cur;
+                int nx = nb / h;
+                push(ng + heuristic(nx, nb - nx * h, tx, ty), ng, nb);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of cells reached by the last search.
+     */
+    int lastVisited() {
+        return _visited;
+    }
+
+    /**
+     * Torus aware Manhattan distance from [x][y] to [tx][ty].
+     */
+    private int heuristic(int x, int y, int tx, int ty) {
+        int dx = Math.abs(x - tx), dy = Math.abs(y - ty);
+        if (_cyclic) {
+            dx = Math.min(dx, _w - dx);
+            dy = Math.min(dy, _h - dy);
+        }
+        return dx + dy;
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    private void bfsLikePath(int target, int distance, int[] parent, PathBuffer out) {
+        int[] ans = out.begin(distance + 1, _h);
+        int cur = target;
+        for (int i = distance; i >= 0; i--) {
+            ans[i] = cur;
+            cur = parent[cur];
+        }
+    }
+
+    private void begin(int w, int h, boolean cyclic) {
+        int states = w * h;
+        _w = w;
+        _h = h;
+        _cyclic = cyclic;
+        _heapSize = 0;
+        if (_seen.length < states) {
+            _g = new int[states];
+            _parent = new int[states];
+            _seen = new int[states];
+            _closed = new int[states];
+            _stamp = 0;
+        }
+        if (_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(_seen, 0);
+            Arrays.fill(_closed, 0);
+            _stamp = 0;
+        }
+        _stamp++;
+    }
+
+    /**
+     * Open list key: f in the high bits, then larger g first (so ties are broken towards the goal).
+     */
+    private void push(int f, int g, int node) {
+        long key = ((long) f << 32) | (Integer.MAX_VALUE - g);
+        if (_heapSize == _heapKeys.length) {
+            _heapKeys = Arrays.copyOf(_heapKeys, _heapSize * 2);
+            _heapNodes = Arrays.copyOf(_heapNodes, _heapSize * 2);
+        }
+        int i = _heapSize++;
+        while (i > 0) {
+            int p = (i - 1) >> 1;
+            if (_heapKeys[p] <= key) break;
+            _heapKeys[i] = _heapKeys[p];
+            _heapNodes[i] = _heapNodes[p];
+            i = p;
+        }
+        _heapKeys[i] = key;
+        _heapNodes[i] = node;
+    }
+
+    private void pop() {
+        long key = _heapKeys[--_heapSize];
+        int node = _heapNodes[_heapSize];
+        int i = 0, half = _heapSize >> 1;
+        while (i < half) {
+            int c = 2 * i + 1;
+            if (c + 1 < _heapSize && _heapKeys[c + 1] < _heapKeys[c]) c++;
+            if (key <= _heapKeys[c]) break;
+            _heapKeys[i] = _heapKeys[c];
+            _heapNodes[i] = _heapNodes[c];
+            i = c;
+        }
+        _heapKeys[i] = key;
+        _heapNodes[i] = node;
+    }
+
+    private static int gOf(long key) {
+        return Integer.MAX_VALUE - (int) (key & 0xffffffffL);
+    }
+}
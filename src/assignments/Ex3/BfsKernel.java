@@ -0,0 +1,309 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * An allocation free BFS over the flat cells of a Map (the entry [x][y] is at x*h+y).
+ * The queue, parent, distance and visited arrays are kept between searches and only grow,
+ * so a search over the whole board does not produce garbage.
+ * The visited array is "stamped": a cell is visited iff mark[i]==stamp, so it never needs clearing.
+ * Not thread safe - every Map owns its own kernel.
+ */
+final class BfsKernel {
+    /** The 4 directions, in the same order as the neighbors of a pixel: x+1, x-1, y+1, y-1. */
+    static final int RIGHT = 0, LEFT = 1, DOWN = 2, UP = 3;
+
+    private int[] _queue = new int[0];
+    private int[] _parent = new int[0];
+    private int[] _dist = new int[0];
+    private int[] _mark = new int[0];
+    // the second side of a bidirectional search, allocated on first use.
+    private int[] _queueB = new int[0];
+    private int[] _parentB = new int[0];
+    private int[] _distB = new int[0];
+    private int[] _markB = new int[0];
+    private int[] _first = new int[0]; // the first step from the source, for nearest, allocated on first use
+    private int _stamp;
+    private int _visited;
+
+    /**
+     * Returns the index of the neighbor of [x][y] in direction dir, or -1 if there is none.
+     */
+    static int step(int x, int y, int dir, int w, int h, boolean cyclic) {
+        switch (dir) {
+            case RIGHT:
+                if (x + 1 < w) return (x + 1) * h + y;
+                return cyclic ? y : -1;
+            case LEFT:
+                if (x > 0) return (x - 1) * h + y;
+                return cyclic ? (w - 1) * h + y : -1;
+            case DOWN:
+                if (y + 1 < h) return x * h + y + 1;
+                return cyclic ? x * h : -1;
+            default:
+                if (y > 0) return x * h + y - 1;
+                return cyclic ? x * h + h - 1 : -1;
+        }
+    }
+
+    /**
+     * BFS from src over all the cells which are not obs.
+     * @param cells the map cells.
+     * @param src the source index.
+     * @param target the index to stop at, or -1 for a full search.
+     * @param out if not null, receives the distance of every reached cell (other entries are untouched).
+     * @return the distance of target, or -1 if it was not reached (or target==-1).
+     */
+    int search(int[] cells, int w, int h, boolean cyclic, int src, int target, int obs, int[] out) {
+        return search(cells, w, h, cyclic, src, target, obs, out, null, 0);
+    }
+
+    /**
+     * Same as search, where the first blockedCount cells of blocked are obstacles too (whatever their color).
+     * They are marked as visited before the search starts, so they cost nothing per step.
+     */
+    int search(int[] cells, int w, int h, boolean cyclic, int src, int target, int obs, int[] out,
+               int[] blocked, int blockedCount) {
+        int n = w * h;
+        ensureCapacity(n);
+        int stamp = nextStamp();
+        int[] queue = _queue, parent = _parent, mark = _mark;
+        int[] dist = out != null ? out : _dist;
+        int head = 0, tail = 0;
+
+        for (int i = 0; i < blockedCount; i++) mark[blocked[i]] = stamp;
+        mark[src] = stamp;
+        parent[src] = -1;
+        dist[src] = 0;
+        queue[tail++] = src;
+
+        // every cell is queued at most once, so the queue never has to wrap around.
+        while (head < tail) {
+            int cur = queue[head++];
+            if (cur == target) break;
+            int x = cur / h, y = cur - x * h;
+            int d = dist[cur] + 1;
+            for (int dir = 0; dir < 4; dir++) {
+                int nb = step(x, y, dir, w, h, cyclic);
+                if (nb < 0 || mark[nb] == stamp || cells[nb] == obs) continue;
+                mark[nb] = stamp;
+                parent[nb] = cur;
+                dist[nb] = d;
+                queue[tail++] = nb;
+            }
+        }
+        _visited = tail;
+        if (target < 0 || mark[target] != stamp) return -1;
+        return dist[target];
+    }
+
+    /**
+     * One BFS seeded from all the sources at once (sources which are obs are skipped).
+     * Every reached cell gets the distance to its nearest source and, in owner, that source's position
+     * in the sources array (on a tie, the source which comes first).
+     * @param dist receives the distance of every reached cell (other entries are untouched).
+     * @param owner receives the owning source of every reached cell (other entries are untouched).
+     */
+    void multiSource(int[] cells, int w, int h, boolean cyclic, int[] sources, int obs, int[] dist, int[] owner) {
+        ensureCapacity(w * h);
+        int stamp = nextStamp();
+        int[] queue = _queue, mark = _mark;
+        int head = 0, tail = 0;
+        for (int s = 0; s < sources.length; s++) {
+            int src = sources[s];
+            if (src < 0 || mark[src] == stamp || cells[src] == obs) continue;
+            mark[src] = stamp;
+            dist[src] = 0;
+            owner[src] = s;
+            queue[tail++] = src;
+        }
+        while (head < tail) {
+            int cur = queue[head++];
+            int x = cur / h, y = cur - x * h;
+            int d = dist[cur] + 1, o = owner[cur];
+            for (int dir = 0; dir < 4; dir++) {
+                int nb = step(x, y, dir, w, h, cyclic);
+                if (nb < 0 || mark[nb] == stamp || cells[nb] == obs) continue;
+                mark[nb] = stamp;
+                dist[nb] = d;
+                owner[nb] = o;
+                queue[tail++] = nb;
+            }
+        }
+        _visited = tail;
+    }
+
+    /**
+     * BFS from src which stops as soon as k cells of color (other than src) are reached - in a BFS the distance
+     * of a cell is final once it is reached. found receives those cells in the order they were reached
+     * (by distance, then by BFS order), and distance(c) / firstStep(c) then tell their distance and the neighbor
+     * of src their path starts with. Blocked cells are obstacles, as in search.
+     * @return the number of cells found, less than k if fewer can be reached.
+     */
+    int nearest(int[] cells, int w, int h, boolean cyclic, int src, int color, int k, int obs, int[] found,
+                int[] blocked, int blockedCount) {
+        int n = w * h;
+        ensureCapacity(n);
+        if (_first.length < n) _first = new int[n];
+        int stamp = nextStamp();
+        int[] queue = _queue, parent = _parent, dist = _dist, mark = _mark, first = _first;
+        int head = 0, tail = 0, count = 0;
+
+        for (int i = 0; i < blockedCount; i++) mark[blocked[i]] = stamp;
+        mark[src] = stamp;
+        parent[src] = -1;
+        dist[src] = 0;
+        first[src] = -1;
+        queue[tail++] = src;
+
+        while (head < tail && count < k) {
+            int cur = queue[head++];
+            int x = cur / h, y = cur - x * h;
+            int d = dist[cur] + 1, f = cur == src ? -1 : first[cur];
+            for (int dir = 0; dir < 4 && count < k; dir++) {
+                int nb = step(x, y, dir, w, h, cyclic);
+                if (nb < 0 || mark[nb] == stamp || cells[nb] == obs) continue;
+                mark[nb] = stamp;
+                parent[nb] = cur;
+                dist[nb] = d;
+                first[nb] = f < 0 ? nb : f;
+                queue[tail++] = nb;
+                if (cells[nb] == color) found[count++] = nb;
+            }
+        }
+        _visited = tail;
+        return count;
+    }
+
+    /**
+     * @return the distance of a cell found by the last nearest search.
+     */
+    int distance(int i) {
+        return _dist[i];
+    }
+
+    /**
+     * @return the neighbor of the source a shortest path to a cell found by the last nearest search starts with.
+     */
+    int firstStep(int i) {
+        return _first[i];
+    }
+
+    /**
+     * Bidirectional BFS: grows one frontier from src and one from target, a full level at a time,
+     * always expanding the smaller one, and stops as soon as they meet.
+     * Before a level is expanded no cell is reached by both sides, so the first meeting closes a shortest path.
+     * @return true if there is a path from src to target: out then holds a shortest one.
+     */
+    boolean bidirectional(int[] cells, int w, int h, boolean cyclic, int src, int target, int obs, PathBuffer out) {
+        int n = w * h;
+        ensureCapacity(n);
+        if (_markB.length < n) {
+            _queueB = new int[n];
+            _parentB = new int[n];
+            _distB = new int[n];
+            _markB = new int[n];
+            Arrays.fill(_mark, 0); // both sides share one stamp
+            _stamp = 0;
+        }
+        int stamp = nextStamp();
+        int[] queueA = _queue, parentA = _parent, distA = _dist, markA = _mark;
+        int[] queueB = _queueB, parentB = _parentB, distB = _distB, markB = _markB;
+        int headA = 0, tailA = 0, headB = 0, tailB = 0;
+
+        markA[src] = stamp; parentA[src] = -1; distA[src] = 0; queueA[tailA++] = src;
+        markB[target] = stamp; parentB[target] = -1; distB[target] = 0; queueB[tailB++] = target;
+
+        int meetA = -1, meetB = -1;
+        while (meetA < 0 && headA < tailA && headB < tailB) {
+            boolean fromA = tailA - headA <= tailB - headB;
+            int[] queue = fromA ? queueA : queueB, parent = fromA ? parentA : parentB;
+            int[] dist = fromA ? distA : distB, mark = fromA ? markA : markB;
+            int[] otherMark = fromA ? markB : markA;
+            int head = fromA ? headA : headB, tail = fromA ? tailA : tailB;
+            int levelEnd = tail;
+
+            while (head < levelEnd && meetA < 0) {
+                int cur = queue[head++];
+                int x = cur / h, y = cur - x * h;
+                int d = dist[cur] + 1;
+                for (int dir = 0; dir < 4; dir++) {
+                    int nb = step(x, y, dir, w, h, cyclic);
+                    if (nb < 0 || mark[nb] == stamp || cells[nb] == obs) continue;
+                    if (otherMark[nb] == stamp) {
+                        meetA = fromA ? cur : nb;
+                        meetB = fromA ? nb : cur;
+                        break;
+                    }
+                    mark[nb] = stamp;
+                    parent[nb] = cur;
+                    dist[nb] = d;
+                    queue[tail++] = nb;
+                }
+            }
+            if (fromA) { headA = head; tailA = tail; }
+            else { headB = head; tailB = tail; }
+        }
+        _visited = tailA + tailB;
+        if (meetA < 0) return false;
+
+        int[] ans = out.begin(distA[meetA] + 1 + distB[meetB] + 1, h);
+        int cur = meetA;
+        for (int i = distA[meetA]; i >= 0; i--) {
+            ans[i] = cur;
+            cur = parentA[cur];
+        }
+        cur = meetB;
+        for (int i = distA[meetA] + 1; i < out.length(); i++) {
+            ans[i] = cur;
+            cur = parentB[cur];
+        }
+        return true;
+    }
+
+    /**
+     * Writes to out the path from the last search source to target (which must have been reached at the given distance).
+     */
+    void path(int target, int distance, int h, PathBuffer out) {
+        int[] ans = out.begin(distance + 1, h);
+        int cur = target;
+        for (int i = distance; i >= 0; i--) {
+            ans[i] = cur;
+            cur = _parent[cur];
+        }
+    }
+
+    /**
+     * @return the cell i was reached from in the last (single frontier) search, -1 for its source.
+     */
+    int parent(int i) {
+        return _parent[i];
+    }
+
+    /**
+     * @return the number of cells reached by the last search.
+     */
+    int lastVisited() {
+        return _visited;
+    }
+
+    private void ensureCapacity(int n) {
+        if (_mark.length < n) {
+            _queue = new int[n];
+            _parent = new int[n];
+            _dist = new int[n];
+            _mark = new int[n];
+            _markB = new int[0]; // its stamps are stale now, reallocated on the next bidirectional search
+            _stamp = 0;
+        }
+    }
+
+    private int nextStamp() {
+        if (_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(_mark, 0);
+            Arrays.fill(_markB, 0);
+            _stamp = 0;
+        }
+        return ++_stamp;
+    }
+}
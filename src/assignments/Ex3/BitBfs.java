@@ -0,0 +1,191 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * A word-parallel BFS (distances only) over the flat cells of a Map (the entry [x][y] is at x*h+y).
+ * Every column is a bitset of (h+63)/64 longs (padded to a power of 2, so the column of a word is a shift away)
+ * whose bit y is the cell [x][y], and a level of the wavefront grows 64 cells at a time: the y neighbors are the
+ * frontier shifted by one bit (carrying between words, and around the column on a cyclic map) and the x neighbors
+ * are the same words of the columns x-1 and x+1.
+ * Only the words around the current frontier are expanded, unless the frontier is dense, then all of them.
+ * It pays off when the wavefront is wide; along a long 1-wide corridor every level is a single bit,
+ * and the queue BFS is faster.
+ * The passable mask is kept between searches of the same map version.
+ * Not thread safe - every Map owns its own.
+ */
+final class BitBfs {
+    private long[] _pass = new long[0];
+    private long[] _vis = new long[0];
+    private long[] _front = new long[0];
+    private long[] _next = new long[0];
+    private int[] _cur = new int[0];
+    private int[] _nextList = new int[0];
+    private int[] _mark = new int[0];
+    private int _stamp, _visited;
+    private int _maskObs, _maskW, _maskH;
+    private long _maskVersion = -1;
+
+    // the dimensions of the current search
+    private int _w, _h, _shift, _last, _nextSize;
+    private boolean _cyclic;
+
+    /**
+     * Writes the BFS distance from src of every cell reachable from it into out (other entries are untouched).
+     * @param version the version of the cells, the mask of the previous search is reused if it did not change.
+     * @return the number of reached cells.
+     */
+    int search(int[] cells, int w, int h, boolean cyclic, int src, int obs, long version, int[] out) {
+        int last = (h - 1) >>> 6, shift = 32 - Integer.numberOfLeadingZeros(last), words = 1 << shift, n = w * words;
+        ensureCapacity(n);
+        _w = w;
+        _h = h;
+        _shift = shift;
+        _last = last;
+        _cyclic = cyclic;
+        if (version != _maskVersion || obs != _maskObs || w != _maskW || h != _maskH) {
+            buildMask(cells, obs);
+            _maskVersion = version;
+            _maskObs = obs;
+            _maskW = w;
+            _maskH = h;
+        }
+        long[] vis = _vis;
+        Arrays.fill(vis, 0, n, 0);
+        Arrays.fill(_front, 0, n, 0);
+        Arrays.fill(_next, 0, n, 0);
+
+        int sx = src / h, sy = src - sx * h, sw = (sx << shift) + (sy >>> 6);
+        _front[sw] = vis[sw] = 1L << sy;
+        _cur[0] = sw;
+        out[src] = 0;
+        int curSize = 1, reached = 1, d = 0;
+
+        while (curSize > 0) {
+            d++;
+            _nextSize = 0;
+            if (curSize * 5 >= n) { // a dense frontier: sweep all the words
+                for (int c = 0; c < n; c++) expand(c);
+            } else {
+                int stamp = nextStamp(), lastBit = (h - 1) & 63, mask = words - 1;
+                long[] front = _front;
+                for (int i = 0; i < curSize; i++) {
+                    int c = _cur[i], x = c >>> shift, k = c & mask;
+                    long f = front[c];
+                    visit(c, stamp);
+                    // the words above and below are reached only through the edge bits
+                    if ((f & 1L) != 0) {
+                        if (k > 0) visit(c - 1, stamp);
+                        else if (cyclic) visit(c + last, stamp);
+                    }
+                    if (k < last) {
+                        if (f < 0) visit(c + 1, stamp);
+                    } else if (cyclic && (f >>> lastBit) != 0) {
+                        visit(c - last, stamp);
+                    }
+                    if (x > 0) visit(c - words, stamp);
+                    else if (cyclic) visit(c + (w - 1) * words, stamp);
+                    if (x < w - 1) visit(c + words, stamp);
+                    else if (cyclic) visit(c - (w - 1) * words, stamp);
+                }
+            }
+
+            // write the distances of the new level, and make it the frontier.
+            long[] front = _front, next = _next;
+            int[] list = _nextList;
+            for (int i = 0; i < _nextSize; i++) {
+                int c = list[i];
+                int base = (c >>> shift) * h + ((c & (words - 1)) << 6);
+                long bits = next[c];
+                reached += Long.bitCount(bits);
+                while (bits != 0) {
+                    out[base + Long.numberOfTrailingZeros(bits)] = d;
+                    bits &= bits - 1;
+                }
+            }
+            for (int i = 0; i < curSize; i++) front[_cur[i]] = 0;
+            _front = next;
+            _next = front;
+            _nextList = _cur;
+            _cur = list;
+            curSize = _nextSize;
+        }
+        _visited = reached;
+        return reached;
+    }
+
+    /**
+     * @return the number of cells reached by the last search.
+     */
+    int lastVisited() {
+        return _visited;
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    private void visit(int c, int stamp) {
+        if (_mark[c] == stamp) return;
+        _mark[c] = stamp;
+        expand(c);
+    }
+
+    /**
+     * Computes the cells of word c which are reached by the current frontier for the first time.
+     */
+    private void expand(int c) {
+        long[] front = _front;
+        int words = 1 << _shift, x = c >>> _shift, k = c & (words - 1), last = _last;
+        long f = front[c];
+        long g = (f << 1) | (f >>> 1);
+        if (k > 0) g |= front[c - 1] >>> 63;
+        if (k < last) g |= front[c + 1] << 63;
+        if (_cyclic && _h > 1) {
+            int lastBit = (_h - 1) & 63;
+            if (k == 0) g |= (front[c + last] >>> lastBit) & 1L;
+            if (k == last) g |= (front[c - last] & 1L) << lastBit;
+        }
+        if (x > 0) g |= front[c - words];
+        else if (_cyclic) g |= front[c + (_w - 1) * words];
+        if (x < _w - 1) g |= front[c + words];
+        else if (_cyclic) g |= front[c - (_w - 1) * words];
+
+        long fresh = g & _pass[c] & ~_vis[c];
+        if (fresh != 0) {
+            _next[c] = fresh;
+            _vis[c] |= fresh;
+            _nextList[_nextSize++] = c;
+        }
+    }
+
+    private void buildMask(int[] cells, int obs) {
+        int h = _h, words = 1 << _shift;
+        for (int x = 0; x < _w; x++) {
+            int base = x * h;
+            for (int k = 0; k < words; k++) {
+                int y0 = k << 6, length = Math.max(0, Math.min(h, y0 + 64) - y0);
+                long inside = length == 64 ? -1L : (1L << length) - 1;
+                _pass[x * words + k] = ~BulkOps.maskWord(cells, base + y0, length, obs) & inside;
+            }
+        }
+    }
+
+    private void ensureCapacity(int n) {
+        if (_pass.length >= n) return;
+        _pass = new long[n];
+        _vis = new long[n];
+        _front = new long[n];
+        _next = new long[n];
+        _cur = new int[n];
+        _nextList = new int[n];
+        _mark = new int[n];
+        _stamp = 0;
+        _maskVersion = -1;
+    }
+
+    private int nextStamp() {
+        if (_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(_mark, 0);
+            _stamp = 0;
+        }
+        return ++_stamp;
+    }
+}
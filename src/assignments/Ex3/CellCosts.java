@@ -0,0 +1,117 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * The cost of entering a cell, for Map's weighted searches (weightedDistance, weightedPath, weightedPathToNearest):
+ * a default cost, per color costs, and per cell costs which override the color of the cell.
+ * Costs are small non-negative ints (up to MAX_COST), BLOCKED (any negative cost) marks an obstacle.
+ * The cost of a path is the sum of the costs of the cells it enters (its start is free).
+ * Per cell costs are meant to change often (e.g. the cells around the ghosts, every tick), see clearCellCosts.
+ */
+public final class CellCosts {
+    public static final int BLOCKED = -1;
+    /**
+     * The largest cost: the bucket queue of the weighted search keeps (and clears) MAX_COST+1 buckets at most.
+     * Path costs are ints, so a search is refused when (w*h-1)*C could overflow, for a largest cost C used.
+     */
+    public static final int MAX_COST = 1 << 12;
+
+    private final int _default;
+    private int[] _colors = new int[4], _colorCosts = new int[4];
+    private int _colorCount;
+    private int[] _cellX = new int[16], _cellY = new int[16], _cellCosts = new int[16];
+    private int _cellCount;
+
+    /**
+     * @param defaultCost the cost of the cells whose color has no cost of its own.
+     */
+    public CellCosts(int defaultCost) {
+        _default = check(defaultCost);
+    }
+
+    /**
+     * Sets the cost of the cells of the given color.
+     */
+    public void setColorCost(int color, int cost) {
+        cost = check(cost);
+        for (int i = 0; i < _colorCount; i++) {
+            if (_colors[i] == color) {
+                _colorCosts[i] = cost;
+                return;
+            }
+        }
+        if (_colorCount == _colors.length) {
+            _colors = Arrays.copyOf(_colors, _colorCount * 2);
+            _colorCosts = Arrays.copyOf(_colorCosts, _colorCount * 2);
+        }
+        _colors[_colorCount] = color;
+        _colorCosts[_colorCount++] = cost;
+    }
+
+    /**
+     * @return the cost of the cells of the given color (which have no cost of their own).
+     */
+    public int getColorCost(int color) {
+        for (int i = 0; i < _colorCount; i++) {
+            if (_colors[i] == color) return _colorCosts[i];
+        }
+        return _default;
+    }
+
+    /**
+     * Sets the cost of the cell [x][y] whatever its color; the last cost set for a cell wins.
+     * Cells outside the searched map are ignored.
+     */
+    public void setCellCost(int x, int y, int cost) {
+        cost = check(cost);
+        if (_cellCount == _cellX.length) {
+            _cellX = Arrays.copyOf(_cellX, _cellCount * 2);
+            _cellY = Arrays.copyOf(_cellY, _cellCount * 2);
+            _cellCosts = Arrays.copyOf(_cellCosts, _cellCount * 2);
+        }
+        _cellX[_cellCount] = x;
+        _cellY[_cellCount] = y;
+        _cellCosts[_cellCount++] = cost;
+    }
+
+    /**
+     * Drops all the per cell costs (the color costs are kept).
+     */
+    public void clearCellCosts() {
+        _cellCount = 0;
+    }
+
+    /**
+     * Writes the cost of every cell of a w*h map (the entry [x][y] is at x*h+y) to cost.
+     * @return an upper bound of the costs (BLOCKED if every cell is).
+     */
+    int resolve(int[] cells, int w, int h, int[] cost) {
+        int n = w * h;
+        int lastColor = 0, lastCost = getColorCost(0), max = lastCost;
+        for (int i = 0; i < n; i++) {
+            int c = cells[i];
+            if (c != lastColor) { // the cells come in long runs of the same color
+                lastColor = c;
+                lastCost = getColorCost(c);
+                if (lastCost > max) max = lastCost;
+            }
+            cost[i] = lastCost;
+        }
+        for (int i = 0; i < _cellCount; i++) {
+            int x = _cellX[i], y = _cellY[i];
+            if (x >= 0 && x < w && y >= 0 && y < h) {
+                cost[x * h + y] = _cellCosts[i];
+                if (_cellCosts[i] > max) max = _cellCosts[i];
+            }
+        }
+        return max;
+    }
+
+    private static int check(int cost) {
+        if (cost > MAX_COST) {
+            throw new RuntimeException("Cost too large: " + cost);
+        }
+        return cost < 0 ? BLOCKED : cost;
+    }
+}
@@ -0,0 +1,111 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * The cells of a Map by color (see Map.setColorIndex): for every color that appears, a compact set of its cells
+ * (packed indices, in no particular order), so counting the cells of a color is O(1) and listing them O(k).
+ * Every cell also keeps its position in the set of its color, so a change of color moves it between two sets
+ * in O(1) (the last cell of a set takes the place of a removed one).
+ * Colors are looked up linearly (with the last one cached): it is meant for boards of a few colors.
+ */
+final class ColorIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] _colors = new int[4];
+    private int[][] _cells = new int[4][];
+    private int[] _sizes = new int[4];
+    private int _colorCount, _last;
+    private final int[] _slot; // cell -> its position in the set of its color
+
+    /**
+     * Indexes all the given cells.
+     */
+    ColorIndex(int[] cells) {
+        _slot = new int[cells.length];
+        for (int i = 0; i < cells.length; i++) add(id(cells[i], true), i);
+    }
+
+    /**
+     * @return the number of cells of color.
+     */
+    int count(int color) {
+        int c = id(color, false);
+        return c < 0 ? 0 : _sizes[c];
+    }
+
+    /**
+     * @return the cells of color: the first count(color) entries of the returned array, which is live (do not write it).
+     */
+    int[] cells(int color) {
+        int c = id(color, false);
+        return c < 0 ? EMPTY : _cells[c];
+    }
+
+    /**
+     * The cell changes from color old to v (old != v).
+     */
+    void set(int cell, int old, int v) {
+        remove(id(old, false), cell);
+        add(id(v, true), cell);
+    }
+
+    /**
+     * The len cells of the column at base from [y0] (wrapping around h) change from color old to v, see ScanlineFill.
+     */
+    void setRun(int base, int y0, int len, int h, int old, int v) {
+        int from = id(old, false), to = id(v, true);
+        for (int k = 0, y = y0; k < len; k++) {
+            remove(from, base + y);
+            add(to, base + y);
+            if (++y == h) y = 0;
+        }
+    }
+
+    /**
+     * All the cells of color old change to v (old != v).
+     */
+    void replaceAll(int old, int v) {
+        int from = id(old, false);
+        if (from < 0 || _sizes[from] == 0) return;
+        int to = id(v, true);
+        int[] cells = _cells[from];
+        for (int i = 0; i < _sizes[from]; i++) add(to, cells[i]);
+        _sizes[from] = 0;
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    private void add(int c, int cell) {
+        int size = _sizes[c];
+        if (size == _cells[c].length) _cells[c] = Arrays.copyOf(_cells[c], size * 2);
+        _cells[c][size] = cell;
+        _slot[cell] = size;
+        _sizes[c] = size + 1;
+    }
+
+    private void remove(int c, int cell) {
+        int slot = _slot[cell], last = _cells[c][--_sizes[c]];
+        _cells[c][slot] = last;
+        _slot[last] = slot;
+    }
+
+    /**
+     * @return the id of color, -1 if it has no set (and create is false).
+     */
+    private int id(int color, boolean create) {
+        if (_colorCount > 0 && _colors[_last] == color) return _last;
+        for (int c = 0; c < _colorCount; c++) {
+            if (_colors[c] == color) return _last = c;
+        }
+        if (!create) return -1;
+        if (_colorCount == _colors.length) {
+            _colors = Arrays.copyOf(_colors, _colorCount * 2);
+            _cells = Arrays.copyOf(_cells, _colorCount * 2);
+            _sizes = Arrays.copyOf(_sizes, _colorCount * 2);
+        }
+        _colors[_colorCount] = color;
+        _cells[_colorCount] = new int[16];
+        _sizes[_colorCount] = 0;
+        return _last = _colorCount++;
+    }
+}
@@ -0,0 +1,107 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * Connected components of the cells which are not obs (4-neighbors, wrapping around on a cyclic map),
+ * computed in one raster pass with union-find: every open cell is united with its open neighbors at x-1 and y-1
+ * (and, on a cyclic map, the first column/row with the last one), then the roots are renumbered 0..count-1.
+ * A labelling describes the map at the version it was built for; Map drops it when its cells change.
+ */
+final class ComponentLabels {
+    private final int _obs;
+    private final long _version;
+    private final int[] _label;  // cell -> component (-1 for an obstacle)
+    private final int[] _size;   // component -> number of cells
+
+    ComponentLabels(int[] cells, int w, int h, boolean cyclic, int obs, long version) {
+        _obs = obs;
+        _version = version;
+        int n = w * h;
+        int[] parent = new int[n];
+        for (int x = 0; x < w; x++) {
+            int base = x * h;
+            for (int y = 0; y < h; y++) {
+                int i = base + y;
+                if (cells[i] == obs) {
+                    parent[i] = -1;
+                    continue;
+                }
+                parent[i] = i;
+                if (y > 0) union(parent, cells, obs, i, i - 1);
+                if (x > 0) union(parent, cells, obs, i, i - h);
+                if (cyclic && y == h - 1 && h > 1) union(parent, cells, obs, i, base);
+                if (cyclic && x == w - 1 && w > 1) union(parent, cells, obs, i, y);
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (parent[i] >= 0) parent[i] = find(parent, i);
+        }
+        // relabelled in place: every root is the first cell of its component, so it is relabelled before its members
+        _label = parent;
+        int[] sizes = new int[16];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int root = parent[i];
+            if (root < 0) continue;
+            int label;
+            if (root == i) {
+                label = count++;
+                if (label == sizes.length) sizes = Arrays.copyOf(sizes, label * 2);
+            } else {
+                label = _label[root];
+            }
+            _label[i] = label;
+            sizes[label]++;
+        }
+        _size = Arrays.copyOf(sizes, count);
+    }
+
+    /**
+     * @return true iff this labelling is of obs at the given map version.
+     */
+    boolean isValid(int obs, long version) {
+        return _obs == obs && _version == version;
+    }
+
+    /**
+     * @return the component of the cell, -1 for an obstacle.
+     */
+    int label(int i) {
+        return _label[i];
+    }
+
+    /**
+     * @return the number of cells in the component of the cell, 0 for an obstacle.
+     */
+    int size(int i) {
+        int l = _label[i];
+        return l < 0 ? 0 : _size[l];
+    }
+
+    /**
+     * @return the number of components.
+     */
+    int count() {
+        return _size.length;
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    private static void union(int[] parent, int[] cells, int obs, int a, int b) {
+        if (cells[b] == obs) return;
+        int ra = find(parent, a), rb = find(parent, b);
+        if (ra == rb) return;
+        // the smaller index becomes the root, so the first cell of every component (in index order) is its root
+        if (ra < rb) parent[rb] = ra;
+        else parent[ra] = rb;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]]; // path halving
+            i = parent[i];
+        }
+        return i;
+    }
+}
@@ -0,0 +1,16 @@
+package assignments.Ex3;
+
+/**
+ * The algorithms Map.allDistance can run. All of them return the same distances.
+ */
+public enum DistanceEngine {
+    /** A queue based BFS, one cell at a time (the default). */
+    BFS,
+    /** A wavefront BFS over bitsets: every level grows 64 cells at a time with shifts and ANDs. */
+    BIT_PARALLEL,
+    /**
+     * A BFS whose levels are split between the threads of the common ForkJoinPool.
+     * Maps of less than 2^16 cells run the queue BFS instead.
+     */
+    PARALLEL
+}
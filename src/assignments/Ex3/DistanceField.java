@@ -0,0 +1,307 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * A shortest path distance field from a single source (same values as Map.allDistance) which is
+ * kept up to date incrementally: when the source moves, or a few cells change their obstacle status,
+ * only the cells whose distance may change are touched, instead of running a new BFS over the whole map.
+ *
+ * A repair has 3 phases:
+ * 1. decreases - distances which got shorter (a new source, an opened cell) are propagated outwards.
+ * 2. lost support - a cell is invalid if none of its neighbors (outside the invalid set) is one step closer
+ *    to the source; the invalid set grows from the changed cells, level by level.
+ * 3. rebuild - the invalid cells are re-seeded from their valid neighbors and the decreases are propagated again.
+ *
+ * A repair which grows beyond an eighth of the map (a source move usually changes most distances by 1,
+ * so it is local only near dead ends and equidistant regions) is abandoned for a plain BFS, so an update never
+ * costs much more than allDistance; obstacle changes are usually local.
+ *
+ * The field reads the cells of its map, which must keep its dimensions.
+ * After changing the obstacle status of a cell in the map, call cellChanged for it.
+ */
+public class DistanceField {
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final Map _map;
+    private final int _obs, _w, _h;
+    private final int[] _dist;
+    private final boolean[] _blocked;
+    private int _source;
+
+    // scratch buffers, reused between repairs
+    private final int[] _queue, _queueValue;
+    private final int[] _affected, _mark;
+    private int _stamp, _affectedCount, _touched, _budget;
+    private BfsKernel _bfs;
+
+    /**
+     * Builds the field with Map.allDistance.
+     * @param map the map (the field reads its cells, its dimensions must not change).
+     * @param source the source point.
+     * @param obsColor the color representing obstacles.
+     */
+    public DistanceField(Map map, Pixel2D source, int obsColor) {
+        if (map == null || !map.isInside(source)) {
+            throw new RuntimeException("Bad source");
+        }
+        _map = map;
+        _obs = obsColor;
+        _w = map.getWidth();
+        _h = map.getHeight();
+        int n = _w * _h;
+        _dist = new int[n];
+        _blocked = new boolean[n];
+        _queue = new int[n];
+        _queueValue = new int[n];
+        _affected = new int[n];
+        _mark = new int[n];
+        _source = source.getX() * _h + source.getY();
+        _budget = n / 8;
+
+        int[] cells = map.cells();
+        for (int i = 0; i < n; i++) _blocked[i] = cells[i] == obsColor;
+        ((Map) map.allDistance(source, obsColor)).exportTo(_dist);
+        for (int i = 0; i < n; i++) {
+            if (_dist[i] < 0) _dist[i] = INF;
+        }
+        _touched = n;
+    }
+
+    /**
+     * @return the distance of [x][y] from the source, -1 if it is not reachable.
+     */
+    public int getDistance(int x, int y) {
+        int d = _dist[x * _h + y];
+        return d == INF ? -1 : d;
+    }
+
+    /**
+     * @return the current source.
+     */
+    public Pixel2D getSource() {
+        return new Index2D(_source / _h, _source % _h);
+    }
+
+    /**
+     * @return a new map with the current distances (-1 for unreachable cells), as returned by Map.allDistance.
+     */
+    public Map2D toMap() {
+        Map ans = new Map(_w, _h, -1);
+        int[] out = ans.cells();
+        for (int i = 0; i < out.length; i++) {
+            if (_dist[i] != INF) out[i] = _dist[i];
+        }
+        return ans;
+    }
+
+    /**
+     * @return the number of cells the last update touched (the whole map for the initial BFS or a fallback).
+     */
+    public int lastRepairSize() {
+        return _touched;
+    }
+
+    /**
+     * Moves the source, typically to a neighbor of the current one, and repairs the field.
+     * @param p the new source.
+     */
+    public void moveSource(Pixel2D p) {
+        if (!_map.isInside(p)) {
+            throw new RuntimeException("Bad source");
+        }
+        int old = _source, src = p.getX() * _h + p.getY();
+        if (src == old) return;
+        _source = src;
+        _touched = 0;
+        if (_blocked[src]) { // like allDistance: nothing is reachable from an obstacle
+            Arrays.fill(_dist, INF);
+            _touched = _dist.length;
+            return;
+        }
+        _dist[src] = 0;
+        beginPhase();
+        if (!propagate(new int[]{src}, new int[]{0}) || !invalidate(old, false) || !rebuild()) recompute();
+    }
+
+    /**
+     * Repairs the field after the cell p of the map changed (only a change of its obstacle status matters).
+     * @param p the changed cell.
+     */
+    public void cellChanged(Pixel2D p) {
+        int i = p.getX() * _h + p.getY();
+        boolean blocked = _map.getPixel(p) == _obs;
+        if (blocked == _blocked[i]) return;
+        _blocked[i] = blocked;
+        _touched = 0;
+        if (i == _source) { // the source itself: all or nothing
+            if (blocked) {
+                Arrays.fill(_dist, INF);
+                _touched = _dist.length;
+            } else {
+                _dist[i] = 0;
+                beginPhase();
+                if (!propagate(new int[]{i}, new int[]{0})) recompute();
+            }
+            return;
+        }
+        if (blocked) {
+            if (_dist[i] == INF) return;
+            if (!invalidate(i, true) || !rebuild()) recompute();
+        } else {
+            int d = bestNeighbor(i);
+            _dist[i] = INF;
+            if (d == INF) return;
+            _dist[i] = d + 1;
+            beginPhase();
+            if (!propagate(new int[]{i}, new int[]{d + 1})) recompute();
+        }
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    /**
+     * Phase 2: collects (in _affected) every cell whose distance lost its support, starting from cell.
+     * Cells are checked in increasing distance order, so all the invalid cells one level closer are already known.
+     * @param force the cell is invalid anyway (it became an obstacle).
+     * @return false if the repair ran out of budget.
+     */
+    private boolean invalidate(int cell, boolean force) {
+        beginPhase();
+        int affectStamp = _stamp;
+        _affectedCount = 0;
+        int head = 0, tail = 0;
+        _queue[tail++] = cell;
+        _mark[cell] = affectStamp;
+        while (head < tail) {
+            int v = _queue[head++];
+            if (++_touched > _budget) return false;
+            boolean invalid = (v == cell && force) || (v != _source && !_blocked[v] && !supported(v, affectStamp));
+            if (!invalid) continue;
+            _affected[_affectedCount++] = v;
+            _mark[v] = -affectStamp; // negative: invalid
+            int x = v / _h, y = v - x * _h, d = _dist[v];
+            for (int dir = 0; dir < 4; dir++) {
+                int nb = BfsKernel.step(x, y, dir, _w, _h, _map.isCyclic());
+                if (nb < 0 || _blocked[nb] || _dist[nb] != d + 1 || Math.abs(_mark[nb]) == affectStamp) continue;
+                _mark[nb] = affectStamp;
+                _queue[tail++] = nb;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * true iff a neighbor of v which is not invalid is one step closer to the source.
+     */
+    private boolean supported(int v, int affectStamp) {
+        int d = _dist[v];
+        if (d == INF || d == 0) return d == INF; // an unreachable cell has nothing to lose, a 0 which is not the source is invalid
+        int x = v / _h, y = v - x * _h;
+        for (int dir = 0; dir < 4; dir++) {
+            int nb = BfsKernel.step(x, y, dir, _w, _h, _map.isCyclic());
+            if (nb >= 0 && !_blocked[nb] && _dist[nb] == d - 1 && _mark[nb] != -affectStamp) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Phase 3: resets the invalid cells and re-seeds them from their valid neighbors.
+     * @return false if the repair ran out of budget.
+     */
+    private boolean rebuild() {
+        for (int k = 0; k < _affectedCount; k++) _dist[_affected[k]] = INF;
+        int[] seeds = new int[_affectedCount], values = new int[_affectedCount];
+        int count = 0;
+        for (int k = 0; k < _affectedCount; k++) {
+            int v = _affected[k];
+            if (_blocked[v]) continue;
+            int d = bestNeighbor(v);
+            if (d == INF) continue;
+            seeds[count] = v;
+            values[count++] = d + 1;
+        }
+        beginPhase();
+        return propagate(Arrays.copyOf(seeds, count), Arrays.copyOf(values, count));
+    }
+
+    /**
+     * Lowers the seeds to their values and propagates every decrease outwards (Dijkstra order for unit
+     * weights: the seeds, sorted by value, merged with a FIFO queue whose values never decrease).
+     * @return false if the repair ran out of budget.
+     */
+    private boolean propagate(int[] seeds, int[] values) {
+        sortByValue(seeds, values);
+        for (int k = 0; k < seeds.length; k++) {
+            if (values[k] < _dist[seeds[k]]) _dist[seeds[k]] = values[k];
+        }
+        int s = 0, head = 0, tail = 0;
+        while (s < seeds.length || head < tail) {
+            int v, d;
+            if (head == tail || (s < seeds.length && values[s] <= _queueValue[head])) {
+                v = seeds[s];
+                d = values[s++];
+            } else {
+                v = _queue[head];
+                d = _queueValue[head++];
+            }
+            if (d > _dist[v]) continue; // a stale entry
+            if (++_touched > _budget) return false;
+            int x = v / _h, y = v - x * _h;
+            for (int dir = 0; dir < 4; dir++) {
+                int nb = BfsKernel.step(x, y, dir, _w, _h, _map.isCyclic());
+                if (nb < 0 || _blocked[nb] || _dist[nb] <= d + 1) continue;
+                _dist[nb] = d + 1;
+                _queue[tail] = nb;
+                _queueValue[tail++] = d + 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The fallback of a repair which ran out of budget: a plain BFS from the source.
+     */
+    private void recompute() {
+        if (_bfs == null) _bfs = new BfsKernel();
+        Arrays.fill(_dist, -1);
+        _bfs.search(_map.cells(), _w, _h, _map.isCyclic(), _source, -1, _obs, _dist);
+        for (int i = 0; i < _dist.length; i++) {
+            if (_dist[i] < 0) _dist[i] = INF;
+        }
+        _touched = _dist.length;
+    }
+
+    /**
+     * @return the smallest distance among the open neighbors of v (INF if none).
+     */
+    private int bestNeighbor(int v) {
+        int x = v / _h, y = v - x * _h, best = INF;
+        for (int dir = 0; dir < 4; dir++) {
+            int nb = BfsKernel.step(x, y, dir, _w, _h, _map.isCyclic());
+            if (nb >= 0 && !_blocked[nb] && _dist[nb] < best) best = _dist[nb];
+        }
+        return best;
+    }
+
+    /**
+     * Sorts cells by their values (ties by cell): the pairs are packed into longs, value high, and sorted at once -
+     * O(k log k) for any order, a repair may seed up to the whole budget.
+     */
+    private static void sortByValue(int[] cells, int[] values) {
+        long[] packed = new long[cells.length];
+        for (int i = 0; i < cells.length; i++) packed[i] = (long) values[i] << 32 | cells[i];
+        Arrays.sort(packed);
+        for (int i = 0; i < cells.length; i++) {
+            values[i] = (int) (packed[i] >>> 32);
+            cells[i] = (int) packed[i];
+        }
+    }
+
+    private void beginPhase() {
+        if (_stamp == Integer.MAX_VALUE) {
+            Arrays.fill(_mark, 0);
+            _stamp = 0;
+        }
+        _stamp++;
+    }
+}
@@ -0,0 +1,200 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * All-pairs shortest path distances (and first steps) over the walkable cells of a static map.
+ * Built once per wall layout with one BFS per walkable cell, after that distance and first step
+ * queries are O(1) array reads. Distances are stored as chars and first steps as bytes, so
+ * a k walkable cells oracle takes 3*k*k bytes (about 0.3MB for a 28x31 Pac-Man maze).
+ *
+ * Oracles are cached by the wall mask (a hash of the blocked cells, verified on a hit), so calling
+ * of(map, obsColor) every tick with the same walls only costs a scan of the map. The cache keeps the
+ * most recently used oracles up to CACHE_BYTES of tables in total.
+ */
+public final class DistanceOracle {
+    /** The maximal number of walkable cells (the oracle would take 3*4096^2 = 48MB). */
+    public static final int MAX_CELLS = 1 << 12;
+    /** The maximal total size (3*k*k bytes per oracle) of the cached oracles. */
+    public static final long CACHE_BYTES = 64L << 20;
+    private static final char UNREACHABLE = Character.MAX_VALUE;
+    private static final LinkedHashMap<Long, DistanceOracle> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long _cacheBytes; // guarded by CACHE
+
+    private final int _w, _h;
+    private final boolean _cyclic;
+    private final long[] _blocked;
+    private final int[] _id;      // cell -> walkable id (or -1)
+    private final int[] _cell;    // walkable id -> cell
+    private final char[] _dist;   // [to*k + from]
+    private final byte[] _step;   // [to*k + from], the direction of the first step from "from" towards "to"
+
+    /**
+     * Returns the oracle of the map's layout, where obsColor cells are blocked (reusing a cached one if the layout was seen before).
+     * @return the oracle, or null if the map has more than MAX_CELLS walkable cells.
+     */
+    public static DistanceOracle of(Map2D map, int obsColor) {
+        int w = map.getWidth(), h = map.getHeight();
+        long[] blocked = BulkOps.colorBits(map, obsColor);
+        int walkable = w * h;
+        for (long word : blocked) walkable -= Long.bitCount(word);
+        if (walkable > MAX_CELLS) return null;
+
+        long key = hash(blocked, w, h, map.isCyclic());
+        synchronized (CACHE) {
+            DistanceOracle ans = CACHE.get(key);
+            if (ans != null && ans.sameLayout(blocked, w, h, map.isCyclic())) return ans;
+        }
+        DistanceOracle ans = new DistanceOracle(blocked, w, h, map.isCyclic());
+        synchronized (CACHE) {
+            DistanceOracle old = CACHE.put(key, ans);
+            if (old != null) _cacheBytes -= old.bytes();
+            _cacheBytes += ans.bytes();
+            // evict the least recently used oracles, the new one (at most 48MB) always fits
+            Iterator<DistanceOracle> it = CACHE.values().iterator();
+            while (_cacheBytes > CACHE_BYTES) {
+                _cacheBytes -= it.next().bytes();
+                it.remove();
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Drops all the cached oracles (the ones already returned stay valid).
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+            _cacheBytes = 0;
+        }
+    }
+
+    /**
+     * @return the total size in bytes of the cached oracles' tables.
+     */
+    public static long cachedBytes() {
+        synchronized (CACHE) {
+            return _cacheBytes;
+        }
+    }
+
+    private DistanceOracle(long[] blocked, int w, int h, boolean cyclic) {
+        _w = w;
+        _h = h;
+        _cyclic = cyclic;
+        _blocked = blocked;
+        int n = w * h;
+        _id = new int[n];
+        int[] cells = new int[n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (isBlocked(i)) {
+                cells[i] = 1;
+                _id[i] = -1;
+            } else {
+                _id[i] = k++;
+            }
+        }
+        _cell = new int[k];
+        for (int i = 0; i < n; i++) {
+            if (_id[i] >= 0) _cell[_id[i]] = i;
+        }
+        _dist = new char[k * k];
+        _step = new byte[k * k];
+        Arrays.fill(_dist, UNREACHABLE);
+        Arrays.fill(_step, (byte) -1);
+
+        BfsKernel bfs = new BfsKernel();
+        int[] dist = new int[n];
+        for (int to = 0; to < k; to++) {
+            Arrays.fill(dist, -1);
+            bfs.search(cells, w, h, cyclic, _cell[to], -1, 1, dist);
+            int row = to * k;
+            for (int from = 0; from < k; from++) {
+                int c = _cell[from];
+                if (dist[c] < 0) continue;
+                _dist[row + from] = (char) dist[c];
+                if (c != _cell[to]) _step[row + from] = (byte) direction(c, bfs.parent(c));
+            }
+        }
+    }
+
+    /**
+     * @return the number of walkable cells.
+     */
+    public int size() {
+        return _cell.length;
+    }
+
+    /**
+     * @return the shortest path distance from [x1][y1] to [x2][y2], -1 if one of them is blocked (or outside) or unreachable.
+     */
+    public int distance(int x1, int y1, int x2, int y2) {
+        int from = id(x1, y1), to = id(x2, y2);
+        if (from < 0 || to < 0) return -1;
+        char d = _dist[to * _cell.length + from];
+        return d == UNREACHABLE ? -1 : d;
+    }
+
+    /**
+     * @return the shortest path distance from p1 to p2, -1 if there is no path.
+     */
+    public int distance(Pixel2D p1, Pixel2D p2) {
+        return distance(p1.getX(), p1.getY(), p2.getX(), p2.getY());
+    }
+
+    /**
+     * @return the neighbor of from which is the first step of a shortest path to "to",
+     * null if there is no path (or from equals to).
+     */
+    public Pixel2D firstStep(Pixel2D from, Pixel2D to) {
+        int a = id(from.getX(), from.getY()), b = id(to.getX(), to.getY());
+        if (a < 0 || b < 0) return null;
+        byte dir = _step[b * _cell.length + a];
+        if (dir < 0) return null;
+        int next = BfsKernel.step(from.getX(), from.getY(), dir, _w, _h, _cyclic);
+        return new Index2D(next / _h, next % _h);
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    private long bytes() {
+        long k = _cell.length;
+        return 3 * k * k;
+    }
+
+    private int id(int x, int y) {
+        if (x < 0 || x >= _w || y < 0 || y >= _h) return -1;
+        return _id[x * _h + y];
+    }
+
+    private boolean isBlocked(int i) {
+        return (_blocked[i >> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * The direction (BfsKernel codes) of the neighbor cell "to" from "from".
+     */
+    private int direction(int from, int to) {
+        int x = from / _h, y = from % _h;
+        for (int dir = 0; dir < 4; dir++) {
+            if (BfsKernel.step(x, y, dir, _w, _h, _cyclic) == to) return dir;
+        }
+        return -1;
+    }
+
+    private boolean sameLayout(long[] blocked, int w, int h, boolean cyclic) {
+        return _w == w && _h == h && _cyclic == cyclic && Arrays.equals(_blocked, blocked);
+    }
+
+    private static long hash(long[] blocked, int w, int h, boolean cyclic) {
+        long ans = 0x9E3779B97F4A7C15L * (31L * w + h) + (cyclic ? 1 : 0);
+        for (long word : blocked) {
+            ans = (ans ^ word) * 0xBF58476D1CE4E5B9L;
+            ans ^= ans >>> 31;
+        }
+        return ans;
+    }
+}
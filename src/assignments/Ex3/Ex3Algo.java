@@ -5,9 +5,26 @@ import exe.ex3.game.GhostCL;
 import exe.ex3.game.PacManAlgo;
 import exe.ex3.game.PacmanGame;
 import java.awt.*;
+import java.util.function.ToIntFunction;
 
 public class Ex3Algo implements PacManAlgo {
     private int _count;
+    // the game model is kept between ticks: every tick the new board is diffed into _map (see Map.init),
+    // and the structures which depend on the walls are updated from the tiles which changed.
+    private Map _map;
+    private OverlayMap _ghosts; // the ghost cells painted over _map, dropped every tick
+    private int _blue, _pink; // the board colors, resolved on the first tick
+    private long[] _walls; // the wall cells of _map as bits (the cell x*h+y), as of version _seen
+    private long _seen;
+    private int _wallsW, _wallsH;
+    private DistanceOracle _oracle; // the walls' distances, null if the board is too large for one
+    private JunctionGraph _junctions; // the walls' corridors, for boards too large for a DistanceOracle
+    // the plan: a path from pacman to a pink, followed while it stays valid (see followPlan)
+    private final PathBuffer _path = new PathBuffer();
+    private int _planPos; // pacman's position on _path
+    private int[] _planIndex; // cell -> its position on _path (only valid if _path has that cell there)
+    private boolean _planBlocked; // a ghost zone was painted on the rest of the plan this tick
+    private int _replans, _reuses;
 
     public Ex3Algo() {
         _count = 0;
@@ -18,11 +35,27 @@ public class Ex3Algo implements PacManAlgo {
         return null;
     }
 
+    /**
+     * @return the number of moves which had to plan a new path.
+     */
+    public int getReplans() {
+        return _replans;
+    }
+
+    /**
+     * @return the number of moves which followed the current plan (with no search at all).
+     */
+    public int getReuses() {
+        return _reuses;
+    }
+
     /**
      * This method decides the next move for Pacman.
-     * It gets the game board and marks ghosts as walls to avoid them.
+     * It gets the game board and marks ghosts as walls to avoid them (in an overlay, the board map itself is not painted).
      * It finds the current position of Pacman.
-     * It looks for the closest food (pink dots) using BFS.
+     * It keeps following its current plan while it is valid: pacman is on it, its pink is still there
+     * and no ghost zone is on the rest of it. Otherwise it plans again:
+     * it looks for the closest food (pink dots) using BFS (stopped as soon as the closest one is reached).
      * It returns the direction of the shortest safe path to the food.
      */
     @Override
@@ -30,78 +63,224 @@ public class Ex3Algo implements PacManAlgo {
         _count++;
 
         int[][] board = game.getGame(0);
-        Map myMap = new Map(board);
-        myMap.setCyclic(false);
-        int blue = Game.getIntColor(Color.BLUE, 0);
+        if (_map == null) {
+            _map = new Map(board);
+            _map.setCyclic(false);
+            _map.setColorIndex(true); // the pinks are listed from the index, the board is not scanned for them
+            _ghosts = new OverlayMap(_map);
+            _blue = Game.getIntColor(Color.BLUE, 0);
+            _pink = Game.getIntColor(Color.PINK, 0);
+        } else {
+            _map.init(board); // copies only the tiles which differ from the last tick's board
+        }
+        int blue = _blue;
+        if (updateWalls()) {
+            _oracle = DistanceOracle.of(_map, blue);
+            _junctions = null; // built again when it is needed
+            _path.clear();
+        }
+        _planBlocked = false;
+        _ghosts.reset();
+        _ghosts.setCyclic(false);
+        OverlayMap myMap = _ghosts;
         GhostCL[] ghosts = game.getGhosts(0);
-        for (GhostCL g : ghosts) {
-            if (g != null) {
-                String[] gPos = g.getPos(0).split(",");
-                int gx = Integer.parseInt(gPos[0]);
-                int gy = Integer.parseInt(gPos[1]);
-                myMap.setPixel(gx, gy, blue);
-                markGhostNeighbors(myMap, gx, gy, blue);
+        if (ghosts != null) {
+            for (GhostCL g : ghosts) {
+                if (g != null) {
+                    Pixel2D gPos = parsePos(g.getPos(0));
+                    int gx = gPos.getX();
+                    int gy = gPos.getY();
+                    paintWall(myMap, gx, gy, blue);
+                    markGhostNeighbors(myMap, gx, gy, blue);
+                }
             }
         }
-        String posStr = game.getPos(0).toString();
-        String[] parts = posStr.split(",");
-        int px = Integer.parseInt(parts[0]);
-        int py = Integer.parseInt(parts[1]);
-        Pixel2D pacmanPos = new Index2D(px, py);
-
-        Map2D distMap = myMap.allDistance(pacmanPos, blue);
-        Pixel2D target = findClosestPink(game, distMap);
-
-        if (target != null) {
-            Pixel2D[] path = myMap.shortestPath(pacmanPos, target, blue);
-            if (path != null && path.length > 1) {
-                return getDirection(path[0], path[1]);
-            }
+        Pixel2D pacmanPos = parsePos(game.getPos(0).toString());
+        if (followPlan(pacmanPos)) {
+            _reuses++;
+            return getDirection(pacmanPos, _path.get(_planPos + 1));
+        }
+        _replans++;
+        int pink = _pink;
+        Pixel2D[] pinks = _map.cellsOf(pink);
+
+        Pixel2D step = _oracle != null
+                ? oracleStep(_oracle, pinks, myMap, pacmanPos, blue)
+                : junctionStep(pinks, myMap, pacmanPos, blue);
+        if (step != null) {
+            newPlan();
+            return getDirection(pacmanPos, step);
+        }
+        _path.clear(); // the searches below do not keep a plan
+
+        // one BFS which stops at the closest pink, and already knows the first step towards it
+        NearestTargets closest = myMap.nearestOfColor(pacmanPos, pink, 1, blue);
+        if (closest.size() > 0) {
+            return getDirection(pacmanPos, closest.getFirstStep(0));
         }
 
         return randomDir();
     }
 
+    /**
+     * This method checks if the plan can be followed for one more step from pacmanPos:
+     * pacman is where the plan expects it (it moves on the plan's position if pacman made the last step),
+     * the plan's pink was not eaten and no ghost zone was painted on the rest of the plan.
+     * It costs O(1), plus the painted cells which were checked against the plan while the ghosts were painted.
+     */
+    private boolean followPlan(Pixel2D pacmanPos) {
+        if (_path.length() < 2 || _planBlocked) return false;
+        int cell = pacmanPos.getX() * _path.height() + pacmanPos.getY();
+        if (_planPos + 1 < _path.length() && _path.cell(_planPos + 1) == cell) _planPos++;
+        else if (_path.cell(_planPos) != cell) return false; // pacman left the plan
+        int last = _path.length() - 1;
+        return _planPos < last && _map.getPixel(_path.x(last), _path.y(last)) == _pink;
+    }
+
+    /**
+     * This method makes _path (just found, from pacman to a pink) the plan to follow.
+     */
+    private void newPlan() {
+        int n = _map.getWidth() * _map.getHeight();
+        if (_planIndex == null || _planIndex.length < n) _planIndex = new int[n];
+        for (int i = 0; i < _path.length(); i++) _planIndex[_path.cell(i)] = i;
+        _planPos = 0;
+    }
+
+    /**
+     * This method paints a ghost zone cell as a wall, and notes if it is on the rest of the plan.
+     */
+    private void paintWall(Map2D myMap, int x, int y, int wall) {
+        myMap.setPixel(x, y, wall);
+        int cell = x * myMap.getHeight() + y;
+        if (_planIndex == null || cell >= _planIndex.length) return;
+        int i = _planIndex[cell];
+        if (i > _planPos && i < _path.length() && _path.cell(i) == cell) _planBlocked = true;
+    }
+
+    /**
+     * This method tries to find the first step using the precomputed wall distances only.
+     * Painting the ghosts only makes paths longer, so if the closest pink (by wall distance)
+     * can be reached by a path which avoids the painted cells, it is also the closest one on the painted map.
+     * It returns null when that does not hold, and then the BFS is used.
+     */
+    private Pixel2D oracleStep(DistanceOracle oracle, Pixel2D[] pinks, Map2D myMap, Pixel2D pacmanPos, int wall) {
+        if (!myMap.isInside(pacmanPos) || myMap.getPixel(pacmanPos) == wall) return null;
+        Pixel2D target = findClosestPink(pinks, p -> oracle.distance(pacmanPos, p));
+        if (target == null) return null;
+
+        // the path is written to _path, to be kept as the plan
+        int d = oracle.distance(pacmanPos, target), h = myMap.getHeight();
+        int[] path = _path.begin(d + 1, h);
+        path[0] = pacmanPos.getX() * h + pacmanPos.getY();
+        Pixel2D cur = pacmanPos;
+        for (int i = 1; i <= d; i++) {
+            cur = oracle.firstStep(cur, target);
+            if (cur == null || myMap.getPixel(cur) == wall) return null;
+            path[i] = cur.getX() * h + cur.getY();
+        }
+        return _path.get(1);
+    }
+
+    /**
+     * This method does the same as oracleStep on boards too large for an oracle.
+     * The wall distances come from the junction graph of the walls (built again only after they change):
+     * one Dijkstra over its junctions per tick, then every pink's distance is read off its corridor.
+     */
+    private Pixel2D junctionStep(Pixel2D[] pinks, Map2D myMap, Pixel2D pacmanPos, int wall) {
+        if (!myMap.isInside(pacmanPos) || myMap.getPixel(pacmanPos) == wall) return null;
+        if (_junctions == null) _junctions = new JunctionGraph(_map, wall);
+        if (!_junctions.source(pacmanPos)) return null;
+        Pixel2D target = findClosestPink(pinks, p -> _junctions.distanceTo(p.getX(), p.getY()));
+        if (target == null || !_junctions.pathTo(target, _path)) return null;
+        for (int i = 1; i < _path.length(); i++) {
+            if (myMap.getPixel(_path.x(i), _path.y(i)) == wall) return null;
+        }
+        return _path.get(1);
+    }
+
+    /**
+     * This method keeps _walls up to date with the walls of _map.
+     * Only the tiles of _map which changed since the last tick are read (all of them on the first tick,
+     * or when the board size changes), so a tick which only eats a pellet costs one tile.
+     * @return true if the walls changed.
+     */
+    private boolean updateWalls() {
+        int w = _map.getWidth(), h = _map.getHeight();
+        if (_walls == null || _wallsW != w || _wallsH != h) {
+            _walls = BulkOps.colorBits(_map, _blue);
+            _wallsW = w;
+            _wallsH = h;
+            _seen = _map.getVersion();
+            return true;
+        }
+        if (!_map.changedSince(_seen)) return false;
+        boolean changed = false;
+        for (Pixel2D tile : _map.changedTiles(_seen)) {
+            int x1 = Math.min(tile.getX() + Map.TILE, w), y1 = Math.min(tile.getY() + Map.TILE, h);
+            for (int x = tile.getX(); x < x1; x++) {
+                for (int y = tile.getY(); y < y1; y++) {
+                    int i = x * h + y;
+                    boolean wall = _map.getPixel(x, y) == _blue;
+                    if (wall != ((_walls[i >> 6] & (1L << i)) != 0)) {
+                        _walls[i >> 6] ^= 1L << i;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        _seen = _map.getVersion();
+        return changed;
+    }
+
+    /**
+     * This method parses an "x,y" position (the game's format) without splitting it into strings.
+     */
+    private static Pixel2D parsePos(String pos) {
+        int comma = pos.indexOf(',');
+        int end = pos.indexOf(',', comma + 1);
+        if (end < 0) end = pos.length();
+        return new Index2D(Integer.parseInt(pos, 0, comma, 10), Integer.parseInt(pos, comma + 1, end, 10));
+    }
+
     /**
      * This method marks the 4 neighbors of a ghost as walls.
      * It prevents Pacman from moving to a spot right next to a ghost.
      */
-    private void markGhostNeighbors(Map myMap, int gx, int gy, int wall) {
+    private void markGhostNeighbors(Map2D myMap, int gx, int gy, int wall) {
         int[] dx = {1, -1, 0, 0};
         int[] dy = {0, 0, 1, -1};
         for (int i = 0; i < 4; i++) {
             int nx = gx + dx[i];
             int ny = gy + dy[i];
             if (nx >= 0 && nx < myMap.getWidth() && ny >= 0 && ny < myMap.getHeight()) {
-                myMap.setPixel(nx, ny, wall);
+                paintWall(myMap, nx, ny, wall);
             }
         }
     }
 
     /**
      * This method finds the nearest food (pink pixel) on the board.
-     * It uses the distance map to check which food is the closest to Pacman.
+     * It uses the given distances (from Pacman) to check which food is the closest to Pacman;
+     * on a tie the first one in x then y order wins, as in a scan of the board.
      */
-    private Pixel2D findClosestPink(PacmanGame game, Map2D distMap) {
-        int[][] board = game.getGame(0);
-        int pink = Game.getIntColor(Color.PINK, 0);
+    private static Pixel2D findClosestPink(Pixel2D[] pinks, ToIntFunction<Pixel2D> distance) {
         Pixel2D closest = null;
         int minDist = Integer.MAX_VALUE;
-
-        for (int x = 0; x < board.length; x++) {
-            for (int y = 0; y < board[0].length; y++) {
-                if (board[x][y] == pink) {
-                    int d = distMap.getPixel(x, y);
-                    if (d > 0 && d < minDist) {
-                        minDist = d;
-                        closest = new Index2D(x, y);
-                    }
-                }
+        for (Pixel2D p : pinks) {
+            int d = distance.applyAsInt(p);
+            if (d > 0 && (d < minDist || (d == minDist && before(p, closest)))) {
+                minDist = d;
+                closest = p;
             }
         }
         return closest;
     }
 
+    private static boolean before(Pixel2D a, Pixel2D b) {
+        return a.getX() < b.getX() || (a.getX() == b.getX() && a.getY() < b.getY());
+    }
+
     /**
      * This method determines the move direction based on two pixels.
      * It compares the X and Y coordinates of the current and next pixel
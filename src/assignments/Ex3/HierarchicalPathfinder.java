@@ -0,0 +1,518 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical path finding (HPA*, Botea, Mueller and Schaeffer 2004) over a Map, for long queries on large maps.
+ * The map is split into square clusters; every maximal run of free cell pairs across a cluster border is an entrance,
+ * with one transition in its middle (two, at its ends, for runs of 6 or more). The cells of the transitions are the
+ * nodes of an abstract graph: nodes across a border are 1 apart, and nodes of the same cluster are connected by their
+ * distance inside the cluster (a BFS limited to the cluster, precomputed).
+ * A query links its endpoints to the nodes of their clusters, runs A* on the abstract graph - a few nodes per cluster
+ * instead of every cell - and refines each abstract edge by a BFS inside the one cluster it crosses.
+ * The paths are near-shortest (usually within a few percent), not always the shortest ones; a path is found whenever one exists.
+ * Changes to the map are followed through its dirty tiles (see Map.changedTiles): only the clusters they touch,
+ * and their neighbors across the touched borders, are rebuilt - on the next query.
+ */
+public class HierarchicalPathfinder {
+    public static final int DEFAULT_CLUSTER_SIZE = 32;
+    private static final int LONG_ENTRANCE = 6;
+
+    private final Map _map;
+    private final int _obs, _size;
+    private int _w, _h, _cw, _ch, _dst;
+    private long _version;
+    private boolean _cyclic;
+    private int[][] _vBorders, _hBorders; // the transitions of every border, as pairs of cells (left/upper side first)
+    private int[][] _nodes;               // per cluster: the cells of its nodes
+    private int[][] _intra;               // per cluster: k*k distances between its nodes inside it, -1 if not connected there
+    private boolean _numbered;
+
+    // the numbered abstract graph: the nodes of cluster c are _offset[c].._offset[c+1]-1
+    private int[] _offset, _nodeCell, _nodeCluster, _partnerStart, _partners;
+    // the search, over the numbered nodes and the query's start (N) and goal (N+1)
+    private int[] _g = new int[0], _parent = new int[0], _mark = new int[0], _startDist, _goalDist;
+    private int _stamp;
+    private final LongHeap _open = new LongHeap();
+    private int _expanded;
+    // a BFS inside one cluster, in local indices ((x-x0)*clusterHeight+(y-y0))
+    private final int[] _lDist, _lParent, _lMark, _lQueue;
+    private int _lStamp;
+    private int[] _pathCells = new int[64];
+
+    /**
+     * A path finder over map, whose obstacles are the cells of obsColor, with the default cluster size.
+     */
+    public HierarchicalPathfinder(Map map, int obsColor) {
+        this(map, obsColor, DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * @param clusterSize the side of the clusters, a positive multiple of Map.TILE.
+     */
+    public HierarchicalPathfinder(Map map, int obsColor, int clusterSize) {
+        if (map == null) {
+            throw new RuntimeException("Null map");
+        }
+        if (clusterSize <= 0 || clusterSize % Map.TILE != 0) {
+            throw new RuntimeException("Bad cluster size: " + clusterSize);
+        }
+        _map = map;
+        _obs = obsColor;
+        _size = clusterSize;
+        int s2 = clusterSize * clusterSize;
+        _lDist = new int[s2];
+        _lParent = new int[s2];
+        _lMark = new int[s2];
+        _lQueue = new int[s2];
+        rebuild();
+    }
+
+    /**
+     * A near-shortest obstacle avoiding path from p1 to p2, written to out (as packed cells, see PathBuffer).
+     * @return true if there is a path (out is cleared otherwise).
+     */
+    public boolean findPath(Pixel2D p1, Pixel2D p2, PathBuffer out) {
+        out.clear();
+        update();
+        if (p1 == null || p2 == null || !_map.isInside(p1) || !_map.isInside(p2)) return false;
+        int[] cells = _map.cells();
+        int src = p1.getX() * _h + p1.getY(), dst = p2.getX() * _h + p2.getY();
+        if (cells[src] == _obs || cells[dst] == _obs) return false;
+        if (src == dst) {
+            out.begin(1, _h)[0] = src;
+            return true;
+        }
+        number();
+        _dst = dst;
+        int goal = search(src, dst);
+        if (goal < 0) return false;
+        refine(src, goal, out);
+        return true;
+    }
+
+    /**
+     * Same as findPath(p1, p2, out), as an array of points.
+     * @return the path, null if there is none.
+     */
+    public Pixel2D[] findPath(Pixel2D p1, Pixel2D p2) {
+        PathBuffer ans = new PathBuffer();
+        return findPath(p1, p2, ans) ? ans.toArray() : null;
+    }
+
+    public int getClusterSize() {
+        return _size;
+    }
+
+    /**
+     * @return the number of nodes of the abstract graph (after following the map's changes).
+     */
+    public int nodeCount() {
+        update();
+        int ans = 0;
+        for (int[] nodes : _nodes) ans += nodes.length;
+        return ans;
+    }
+
+    /**
+     * @return the number of abstract nodes expanded by the last query.
+     */
+    public int lastExpanded() {
+        return _expanded;
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    /**
+     * Follows the map's changes since the last query: rebuilds everything after a change of the whole map,
+     * and the touched clusters otherwise.
+     */
+    private void update() {
+        if (!_map.changedSince(_version)) return;
+        if (_map.getWidth() != _w || _map.getHeight() != _h || _map.isCyclic() != _cyclic) {
+            rebuild();
+            return;
+        }
+        Pixel2D[] tiles = _map.changedTiles(_version);
+        _version = _map.getVersion();
+        boolean[] dirty = new boolean[_cw * _ch];
+        for (Pixel2D t : tiles) dirty[(t.getX() / _size) * _ch + t.getY() / _size] = true;
+        boolean[] affected = new boolean[_cw * _ch];
+        for (int c = 0; c < dirty.length; c++) {
+            if (!dirty[c]) continue;
+            int cx = c / _ch, cy = c % _ch;
+            // the 4 borders of the cluster, and the clusters across them
+            if (hasVBorder(cx - 1)) { vBorder(mod(cx - 1, _cw), cy); affected[mod(cx - 1, _cw) * _ch + cy] = true; }
+            if (hasVBorder(cx)) { vBorder(cx, cy); affected[((cx + 1) % _cw) * _ch + cy] = true; }
+            if (hasHBorder(cy - 1)) { hBorder(cx, mod(cy - 1, _ch)); affected[cx * _ch + mod(cy - 1, _ch)] = true; }
+            if (hasHBorder(cy)) { hBorder(cx, cy); affected[cx * _ch + (cy + 1) % _ch] = true; }
+            affected[c] = true;
+        }
+        for (int c = 0; c < affected.length; c++) {
+            if (affected[c]) cluster(c);
+        }
+        _numbered = false;
+    }
+
+    private void rebuild() {
+        _w = _map.getWidth();
+        _h = _map.getHeight();
+        _cyclic = _map.isCyclic();
+        _version = _map.getVersion();
+        _cw = (_w + _size - 1) / _size;
+        _ch = (_h + _size - 1) / _size;
+        _vBorders = new int[_cw * _ch][];
+        _hBorders = new int[_cw * _ch][];
+        _nodes = new int[_cw * _ch][];
+        _intra = new int[_cw * _ch][];
+        for (int cx = 0; cx < _cw; cx++) {
+            for (int cy = 0; cy < _ch; cy++) {
+                if (hasVBorder(cx)) vBorder(cx, cy);
+                else _vBorders[cx * _ch + cy] = new int[0];
+                if (hasHBorder(cy)) hBorder(cx, cy);
+                else _hBorders[cx * _ch + cy] = new int[0];
+            }
+        }
+        for (int c = 0; c < _nodes.length; c++) cluster(c);
+        _numbered = false;
+    }
+
+    /**
+     * The vertical border bx is between the clusters columns bx and bx+1 (the last one wraps to 0 on a cyclic map).
+     */
+    private boolean hasVBorder(int bx) {
+        if (bx < 0) bx += _cw;
+        return bx < _cw - 1 || (bx == _cw - 1 && _cyclic && _cw > 1);
+    }
+
+    private boolean hasHBorder(int by) {
+        if (by < 0) by += _ch;
+        return by < _ch - 1 || (by == _ch - 1 && _cyclic && _ch > 1);
+    }
+
+    /**
+     * Finds the transitions of the vertical border between the clusters (bx,cy) and (bx+1,cy).
+     */
+    private void vBorder(int bx, int cy) {
+        int xl = Math.min((bx + 1) * _size, _w) - 1, xr = (xl + 1) % _w;
+        int y0 = cy * _size, y1 = Math.min(y0 + _size, _h);
+        _vBorders[bx * _ch + cy] = transitions(xl * _h, xr * _h, 1, y0, y1);
+    }
+
+    /**
+     * Finds the transitions of the horizontal border between the clusters (cx,by) and (cx,by+1).
+     */
+    private void hBorder(int cx, int by) {
+        int yt = Math.min((by + 1) * _size, _h) - 1, yb = (yt + 1) % _h;
+        int x0 = cx * _size, x1 = Math.min(x0 + _size, _w);
+        _hBorders[cx * _ch + by] = transitions(yt, yb, _h, x0, x1);
+    }
+
+    /**
+     * The transitions along a border: its pairs are the cells baseA+i*step and baseB+i*step for i in [from, to).
+     */
+    private int[] transitions(int baseA, int baseB, int step, int from, int to) {
+        int[] cells = _map.cells();
+        int[] ans = new int[8];
+        int size = 0;
+        for (int i = from; i < to; ) {
+            if (cells[baseA + i * step] == _obs || cells[baseB + i * step] == _obs) {
+                i++;
+                continue;
+            }
+            int end = i;
+            while (end < to && cells[baseA + end * step] != _obs && cells[baseB + end * step] != _obs) end++;
+            int[] at = end - i >= LONG_ENTRANCE ? new int[]{i, end - 1} : new int[]{(i + end - 1) / 2};
+            for (int k : at) {
+                if (size + 2 > ans.length) ans = Arrays.copyOf(ans, ans.length * 2);
+                ans[size++] = baseA + k * step;
+                ans[size++] = baseB + k * step;
+            }
+            i = end;
+        }
+        return Arrays.copyOf(ans, size);
+    }
+
+    /**
+     * Collects the nodes of cluster c from its borders, and their distances inside it.
+     */
+    private void cluster(int c) {
+        int cx = c / _ch, cy = c % _ch;
+        int[] nodes = new int[8];
+        int k = 0;
+        // the cluster is on the right side of its left border, the left side of its right border etc.
+        int[][] sides = {
+                hasVBorder(cx - 1) ? _vBorders[mod(cx - 1, _cw) * _ch + cy] : null,
+                hasVBorder(cx) ? _vBorders[cx * _ch + cy] : null,
+                hasHBorder(cy - 1) ? _hBorders[cx * _ch + mod(cy - 1, _ch)] : null,
+                hasHBorder(cy) ? _hBorders[cx * _ch + cy] : null};
+        int[] side = {1, 0, 1, 0};
+        for (int s = 0; s < 4; s++) {
+            if (sides[s] == null) continue;
+            for (int i = side[s]; i < sides[s].length; i += 2) {
+                int cell = sides[s][i];
+                if (indexOf(nodes, k, cell) >= 0) continue;
+                if (k == nodes.length) nodes = Arrays.copyOf(nodes, k * 2);
+                nodes[k++] = cell;
+            }
+        }
+        nodes = Arrays.copyOf(nodes, k);
+        int[] intra = new int[k * k];
+        for (int i = 0; i < k; i++) {
+            clusterBfs(c, nodes[i]);
+            for (int j = 0; j < k; j++) intra[i * k + j] = localDistance(c, nodes[j]);
+        }
+        _nodes[c] = nodes;
+        _intra[c] = intra;
+    }
+
+    /**
+     * Numbers the nodes of all the clusters and links the transitions' nodes across the borders.
+     */
+    private void number() {
+        if (_numbered) return;
+        int clusters = _nodes.length;
+        _offset = new int[clusters + 1];
+        for (int c = 0; c < clusters; c++) _offset[c + 1] = _offset[c] + _nodes[c].length;
+        int n = _offset[clusters];
+        _nodeCell = new int[n];
+        _nodeCluster = new int[n];
+        for (int c = 0; c < clusters; c++) {
+            System.arraycopy(_nodes[c], 0, _nodeCell, _offset[c], _nodes[c].length);
+            Arrays.fill(_nodeCluster, _offset[c], _offset[c + 1], c);
+        }
+        // the partners of every node (compressed rows): first counted, then filled
+        _partnerStart = new int[n + 1];
+        for (int pass = 0; pass < 2; pass++) {
+            int[] fill = pass == 1 ? Arrays.copyOf(_partnerStart, n) : null;
+            for (int[][] borders : new int[][][]{_vBorders, _hBorders}) {
+                for (int[] border : borders) {
+                    for (int i = 0; i < border.length; i += 2) {
+                        int a = nodeId(border[i]), b = nodeId(border[i + 1]);
+                        if (pass == 0) {
+                            _partnerStart[a + 1]++;
+                            _partnerStart[b + 1]++;
+                        } else {
+                            _partners[fill[a]++] = b;
+                            _partners[fill[b]++] = a;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int i = 0; i < n; i++) _partnerStart[i + 1] += _partnerStart[i];
+                _partners = new int[_partnerStart[n]];
+            }
+        }
+        if (_g.length < n + 2) {
+            _g = new int[n + 2];
+            _parent = new int[n + 2];
+            _mark = new int[n + 2];
+            _stamp = 0;
+        }
+        _numbered = true;
+    }
+
+    /**
+     * A* on the abstract graph, from src (node N) to dst (node N+1).
+     * @return the goal node id if dst was reached, -1 otherwise.
+     */
+    private int search(int src, int dst) {
+        int n = _nodeCell.length, start = n, goal = n + 1;
+        int cs = clusterOf(src), cg = clusterOf(dst);
+        int direct = -1;
+        clusterBfs(cs, src);
+        _startDist = distances(cs, _startDist);
+        if (cs == cg) direct = localDistance(cs, dst);
+        clusterBfs(cg, dst);
+        _goalDist = distances(cg, _goalDist);
+
+        int stamp = ++_stamp;
+        if (stamp == 0) {
+            Arrays.fill(_mark, 0);
+            stamp = _stamp = 1;
+        }
+        _open.clear();
+        _expanded = 0;
+        _g[start] = 0;
+        _parent[start] = -1;
+        _mark[start] = stamp;
+        _open.push(heuristic(src, dst), start);
+        while (!_open.isEmpty()) {
+            int u = _open.pop();
+            if (_mark[u] == -stamp) continue; // closed: a stale entry
+            _mark[u] = -stamp;
+            _expanded++;
+            if (u == goal) return goal;
+            if (u == start) {
+                int[] nodes = _nodes[cs];
+                for (int j = 0; j < nodes.length; j++) {
+                    if (_startDist[j] >= 0) relax(u, _offset[cs] + j, _startDist[j], dst, stamp);
+                }
+                if (direct >= 0) relax(u, goal, direct, dst, stamp);
+                continue;
+            }
+            int c = _nodeCluster[u], li = u - _offset[c], k = _nodes[c].length;
+            int[] intra = _intra[c];
+            for (int j = 0; j < k; j++) {
+                if (j != li && intra[li * k + j] >= 0) relax(u, _offset[c] + j, intra[li * k + j], dst, stamp);
+            }
+            for (int p = _partnerStart[u]; p < _partnerStart[u + 1]; p++) relax(u, _partners[p], 1, dst, stamp);
+            if (c == cg && _goalDist[li] >= 0) relax(u, goal, _goalDist[li], dst, stamp);
+        }
+        return -1;
+    }
+
+    private void relax(int u, int v, int cost, int dst, int stamp) {
+        int g = _g[u] + cost;
+        if (_mark[v] == -stamp || (_mark[v] == stamp && g >= _g[v])) return;
+        _mark[v] = stamp;
+        _g[v] = g;
+        _parent[v] = u;
+        int cell = v == _nodeCell.length + 1 ? dst : _nodeCell[v];
+        _open.push(g + heuristic(cell, dst), v);
+    }
+
+    /**
+     * Turns the abstract path to goal into cells: a BFS inside a cluster for every edge inside one, a single step across a border.
+     */
+    private void refine(int src, int goal, PathBuffer out) {
+        int n = _nodeCell.length, len = 0;
+        // the abstract path, from its end
+        int[] abs = new int[8];
+        for (int u = goal; u >= 0; u = _parent[u]) {
+            if (len == abs.length) abs = Arrays.copyOf(abs, len * 2);
+            abs[len++] = u;
+        }
+        int size = 0;
+        _pathCells[size++] = src;
+        int prev = src;
+        for (int i = len - 2; i >= 0; i--) {
+            int u = abs[i];
+            int cell = u == n + 1 ? _dst : _nodeCell[u];
+            if (cell == prev) continue;
+            int c = clusterOf(prev);
+            if (c != clusterOf(cell)) { // across a border
+                size = append(size, cell);
+            } else {
+                clusterBfs(c, prev);
+                int steps = localDistance(c, cell), from = size;
+                size += steps;
+                while (size > _pathCells.length) _pathCells = Arrays.copyOf(_pathCells, _pathCells.length * 2);
+                int cur = local(c, cell);
+                for (int s = size - 1; s >= from; s--) {
+                    _pathCells[s] = global(c, cur);
+                    cur = _lParent[cur];
+                }
+            }
+            prev = cell;
+        }
+        System.arraycopy(_pathCells, 0, out.begin(size, _h), 0, size);
+    }
+
+    private int append(int size, int cell) {
+        if (size == _pathCells.length) _pathCells = Arrays.copyOf(_pathCells, size * 2);
+        _pathCells[size] = cell;
+        return size + 1;
+    }
+
+    /**
+     * BFS from cell src, limited to cluster c (its results are read by localDistance and _lParent).
+     */
+    private void clusterBfs(int c, int src) {
+        int[] cells = _map.cells();
+        int cx = c / _ch, cy = c % _ch;
+        int x0 = cx * _size, x1 = Math.min(x0 + _size, _w), y0 = cy * _size, y1 = Math.min(y0 + _size, _h);
+        int ch = y1 - y0;
+        int stamp = ++_lStamp;
+        if (stamp == 0) {
+            Arrays.fill(_lMark, 0);
+            stamp = _lStamp = 1;
+        }
+        int head = 0, tail = 0, s = local(c, src);
+        _lMark[s] = stamp;
+        _lDist[s] = 0;
+        _lParent[s] = -1;
+        _lQueue[tail++] = s;
+        while (head < tail) {
+            int cur = _lQueue[head++];
+            int x = x0 + cur / ch, y = y0 + cur % ch;
+            for (int dir = 0; dir < 4; dir++) {
+                int nb = BfsKernel.step(x, y, dir, _w, _h, _cyclic);
+                if (nb < 0 || cells[nb] == _obs) continue;
+                int nx = nb / _h, ny = nb - nx * _h;
+                if (nx < x0 || nx >= x1 || ny < y0 || ny >= y1) continue;
+                int l = (nx - x0) * ch + (ny - y0);
+                if (_lMark[l] == stamp) continue;
+                _lMark[l] = stamp;
+                _lDist[l] = _lDist[cur] + 1;
+                _lParent[l] = cur;
+                _lQueue[tail++] = l;
+            }
+        }
+    }
+
+    /**
+     * @return the distance of cell (in cluster c) in the last clusterBfs, -1 if it was not reached.
+     */
+    private int localDistance(int c, int cell) {
+        int l = local(c, cell);
+        return _lMark[l] == _lStamp ? _lDist[l] : -1;
+    }
+
+    /**
+     * The distances of cluster c's nodes in the last clusterBfs, into buf (reallocated if too short).
+     */
+    private int[] distances(int c, int[] buf) {
+        int[] nodes = _nodes[c];
+        if (buf == null || buf.length < nodes.length) buf = new int[Math.max(8, nodes.length)];
+        for (int j = 0; j < nodes.length; j++) buf[j] = localDistance(c, nodes[j]);
+        return buf;
+    }
+
+    private int local(int c, int cell) {
+        int cy = c % _ch, x0 = (c / _ch) * _size, y0 = cy * _size;
+        int ch = Math.min(y0 + _size, _h) - y0;
+        int x = cell / _h;
+        return (x - x0) * ch + (cell - x * _h - y0);
+    }
+
+    private int global(int c, int l) {
+        int cy = c % _ch, x0 = (c / _ch) * _size, y0 = cy * _size;
+        int ch = Math.min(y0 + _size, _h) - y0;
+        return (x0 + l / ch) * _h + y0 + l % ch;
+    }
+
+    private int clusterOf(int cell) {
+        int x = cell / _h;
+        return (x / _size) * _ch + (cell - x * _h) / _size;
+    }
+
+    private int nodeId(int cell) {
+        int c = clusterOf(cell);
+        return _offset[c] + indexOf(_nodes[c], _nodes[c].length, cell);
+    }
+
+    /**
+     * The grid distance ignoring obstacles (around the edges too, on a cyclic map): a lower bound of the distance.
+     */
+    private int heuristic(int a, int b) {
+        int ax = a / _h, ay = a - ax * _h, bx = b / _h, by = b - bx * _h;
+        int dx = Math.abs(ax - bx), dy = Math.abs(ay - by);
+        if (_cyclic) {
+            dx = Math.min(dx, _w - dx);
+            dy = Math.min(dy, _h - dy);
+        }
+        return dx + dy;
+    }
+
+    private static int indexOf(int[] arr, int size, int v) {
+        for (int i = 0; i < size; i++) {
+            if (arr[i] == v) return i;
+        }
+        return -1;
+    }
+
+    private static int mod(int a, int m) {
+        return a < 0 ? a + m : a % m;
+    }
+}
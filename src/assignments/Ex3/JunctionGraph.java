@@ -0,0 +1,329 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * The walkable cells of a map compressed into a weighted graph: its nodes are the junctions and dead ends
+ * (the cells without exactly 2 walkable neighbors), its edges the corridors between them, weighted by their length.
+ * Every corridor cell is kept as (edge, offset) - its distance from the first end of the edge - so
+ * the distance to any cell is read off the distances of the two ends of its corridor, and paths are
+ * expanded back to cells. The 384 walkable cells of the classic Pac-Man maze compress to 112 nodes (183 edges),
+ * most of them in its open middle.
+ * Built once per wall layout (see matches). Queries are from a source: source(p) runs Dijkstra over the nodes,
+ * then distanceTo and pathTo are answered from its result. Not thread safe.
+ */
+public final class JunctionGraph {
+    private static final int INF = Integer.MAX_VALUE;
+    // the parent edge of a node reached straight from a source inside a corridor, towards the first / second end
+    private static final int FROM_SOURCE_A = -2, FROM_SOURCE_B = -3;
+
+    private final int _w, _h, _obs;
+    private final boolean _cyclic;
+    private final long[] _blocked;
+    private final int[] _nodeOf;   // cell -> node id, -1 if it is not a node
+    private final int[] _edgeOf;   // cell -> the edge of a corridor cell, -1 otherwise
+    private final int[] _offsetOf; // cell -> the offset of a corridor cell along its edge (1..length-1)
+    private int[] _nodeCell = new int[16];
+    private int _nodeCount;
+    private int[] _edgeA = new int[16], _edgeB = new int[16], _edgeLength = new int[16], _edgeStart = new int[17];
+    private int[] _corridors = new int[16]; // the corridor cells of every edge, from its first end, at _edgeStart[e]
+    private int _edgeCount, _corridorCount;
+    private int[] _adjStart, _adj;          // node -> its edges (compressed rows)
+
+    // the last source and its Dijkstra
+    private int _src = -1;
+    private int[] _dist, _parentEdge;
+    private int _way;
+    private final LongHeap _open = new LongHeap();
+    private int[] _pathCells = new int[64];
+
+    /**
+     * Compresses the walkable cells of map, where the obsColor cells are blocked.
+     */
+    public JunctionGraph(Map2D map, int obsColor) {
+        _w = map.getWidth();
+        _h = map.getHeight();
+        _obs = obsColor;
+        _cyclic = map.isCyclic();
+        int n = _w * _h;
+        _blocked = BulkOps.colorBits(map, obsColor);
+        _nodeOf = new int[n];
+        _edgeOf = new int[n];
+        _offsetOf = new int[n];
+        Arrays.fill(_nodeOf, -1);
+        Arrays.fill(_edgeOf, -1);
+        for (int i = 0; i < n; i++) {
+            if (!isBlocked(i) && !isCorridor(i)) addNode(i);
+        }
+        for (int v = 0; v < _nodeCount; v++) walkCorridors(v);
+        // loops of corridor cells without any junction: one of their cells becomes a node
+        for (int i = 0; i < n; i++) {
+            if (!isBlocked(i) && _nodeOf[i] < 0 && _edgeOf[i] < 0) walkCorridors(addNode(i));
+        }
+        buildAdjacency();
+        _dist = new int[_nodeCount];
+        _parentEdge = new int[_nodeCount];
+    }
+
+    /**
+     * @return true if map has the layout this graph was built from (the same size, cyclic flag and obsColor cells).
+     */
+    public boolean matches(Map2D map) {
+        if (map.getWidth() != _w || map.getHeight() != _h || map.isCyclic() != _cyclic) return false;
+        return Arrays.equals(_blocked, BulkOps.colorBits(map, _obs));
+    }
+
+    public int nodeCount() {
+        return _nodeCount;
+    }
+
+    public int edgeCount() {
+        return _edgeCount;
+    }
+
+    /**
+     * Computes the distances from start to all the nodes; distanceTo and pathTo are from start until the next call.
+     * @return false if start is blocked or outside the map (then nothing is reachable).
+     */
+    public boolean source(Pixel2D start) {
+        Arrays.fill(_dist, INF);
+        _src = cell(start.getX(), start.getY());
+        if (_src < 0) return false;
+        _open.clear();
+        int v = _nodeOf[_src];
+        if (v >= 0) {
+            reach(v, 0, -1);
+        } else {
+            int e = _edgeOf[_src], o = _offsetOf[_src];
+            reach(_edgeA[e], o, FROM_SOURCE_A);
+            reach(_edgeB[e], _edgeLength[e] - o, FROM_SOURCE_B);
+        }
+        while (!_open.isEmpty()) {
+            int u = _open.pop();
+            for (int i = _adjStart[u]; i < _adjStart[u + 1]; i++) {
+                int e = _adj[i];
+                reach(_edgeA[e] == u ? _edgeB[e] : _edgeA[e], _dist[u] + _edgeLength[e], e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the shortest path distance from the source to [x][y], -1 if it is blocked, outside or unreachable.
+     */
+    public int distanceTo(int x, int y) {
+        int target = cell(x, y);
+        if (_src < 0 || target < 0) return -1;
+        int d = best(target);
+        return d == INF ? -1 : d;
+    }
+
+    /**
+     * Writes a shortest path from the source to target to out (as packed cells, see PathBuffer).
+     * @return true if there is a path (out is cleared otherwise).
+     */
+    public boolean pathTo(Pixel2D target, PathBuffer out) {
+        out.clear();
+        int t = cell(target.getX(), target.getY());
+        if (_src < 0 || t < 0) return false;
+        if (best(t) == INF) return false;
+        int size = 0;
+        _pathCells[size++] = _src;
+        if (_way == 0) { // along the source's corridor
+            size = appendEdge(size, _edgeOf[_src], _offsetOf[_src], _offsetOf[t]);
+        } else {
+            int end = _way == 1 ? _edgeA[_edgeOf[t]] : _way == 2 ? _edgeB[_edgeOf[t]] : _nodeOf[t];
+            size = appendToNode(size, end);
+            if (_way == 1) size = appendEdge(size, _edgeOf[t], 0, _offsetOf[t]);
+            if (_way == 2) size = appendEdge(size, _edgeOf[t], _edgeLength[_edgeOf[t]], _offsetOf[t]);
+        }
+        System.arraycopy(_pathCells, 0, out.begin(size, _h), 0, size);
+        return true;
+    }
+
+    /**
+     * Same as pathTo(target, out), as an array of points.
+     * @return the path, null if there is none.
+     */
+    public Pixel2D[] pathTo(Pixel2D target) {
+        PathBuffer ans = new PathBuffer();
+        return pathTo(target, ans) ? ans.toArray() : null;
+    }
+
+    /**
+     * A shortest path from p1 to p2 (p1 becomes the source).
+     * @return the path, null if there is none.
+     */
+    public Pixel2D[] shortestPath(Pixel2D p1, Pixel2D p2) {
+        return source(p1) ? pathTo(p2) : null;
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    private void reach(int v, int d, int parentEdge) {
+        if (d >= _dist[v]) return;
+        _dist[v] = d;
+        _parentEdge[v] = parentEdge;
+        _open.push(d, v);
+    }
+
+    /**
+     * @return the distance of target from the source (INF if unreachable), the way it is reached is left in _way:
+     * 0 - along the source's own corridor, 1 / 2 - through the first / second end of target's corridor, 3 - target is a node.
+     */
+    private int best(int target) {
+        int v = _nodeOf[target];
+        _way = v >= 0 ? 3 : 0;
+        if (target == _src) return 0;
+        if (v >= 0) return _dist[v];
+        int e = _edgeOf[target], o = _offsetOf[target];
+        int ans = _edgeOf[_src] == e ? Math.abs(_offsetOf[_src] - o) : INF;
+        int a = _dist[_edgeA[e]], b = _dist[_edgeB[e]];
+        if (a != INF && a + o < ans) {
+            ans = a + o;
+            _way = 1;
+        }
+        if (b != INF && b + _edgeLength[e] - o < ans) {
+            ans = b + _edgeLength[e] - o;
+            _way = 2;
+        }
+        return ans;
+    }
+
+    /**
+     * Appends the cells of the shortest path from the source to node v (the source itself is already there).
+     */
+    private int appendToNode(int size, int v) {
+        // the nodes on the way, from v back to the first one
+        int[] chain = new int[8];
+        int count = 0;
+        for (int u = v; ; ) {
+            if (count == chain.length) chain = Arrays.copyOf(chain, count * 2);
+            chain[count++] = u;
+            int e = _parentEdge[u];
+            if (e < 0) break;
+            u = _edgeA[e] == u ? _edgeB[e] : _edgeA[e];
+        }
+        int first = chain[count - 1], pe = _parentEdge[first];
+        if (pe == FROM_SOURCE_A) size = appendEdge(size, _edgeOf[_src], _offsetOf[_src], 0);
+        if (pe == FROM_SOURCE_B) size = appendEdge(size, _edgeOf[_src], _offsetOf[_src], _edgeLength[_edgeOf[_src]]);
+        for (int i = count - 2; i >= 0; i--) {
+            int u = chain[i], e = _parentEdge[u];
+            size = _edgeB[e] == u && _edgeA[e] != u
+                    ? appendEdge(size, e, 0, _edgeLength[e])
+                    : appendEdge(size, e, _edgeLength[e], 0);
+        }
+        return size;
+    }
+
+    /**
+     * Appends the cells of edge e at the offsets after from up to to (offset 0 is its first end, its length the second).
+     */
+    private int appendEdge(int size, int e, int from, int to) {
+        int step = to > from ? 1 : -1;
+        for (int k = from + step; k != to + step; k += step) {
+            if (size == _pathCells.length) _pathCells = Arrays.copyOf(_pathCells, size * 2);
+            _pathCells[size++] = k == 0 ? _nodeCell[_edgeA[e]]
+                    : k == _edgeLength[e] ? _nodeCell[_edgeB[e]] : _corridors[_edgeStart[e] + k - 1];
+        }
+        return size;
+    }
+
+    /**
+     * Follows every corridor leaving node v to the node at its other end, adding the edges not found yet.
+     */
+    private void walkCorridors(int v) {
+        int start = _nodeCell[v], x = start / _h, y = start % _h;
+        for (int dir = 0; dir < 4; dir++) {
+            int first = BfsKernel.step(x, y, dir, _w, _h, _cyclic);
+            if (first < 0 || first == start || isBlocked(first)) continue;
+            if (_nodeOf[first] >= 0) { // adjacent nodes, an edge of length 1 (added from its smaller end)
+                if (_nodeOf[first] > v) addEdge(v, _nodeOf[first], 1, 0);
+                continue;
+            }
+            if (_edgeOf[first] >= 0) continue; // found from its other end (or the other way around a loop)
+            int from = _corridorCount, prev = start, cur = first, length = 1;
+            while (_nodeOf[cur] < 0) {
+                if (_corridorCount == _corridors.length) _corridors = Arrays.copyOf(_corridors, _corridorCount * 2);
+                _corridors[_corridorCount++] = cur;
+                _edgeOf[cur] = _edgeCount;
+                _offsetOf[cur] = length++;
+                int next = otherNeighbor(cur, prev);
+                prev = cur;
+                cur = next;
+            }
+            addEdge(v, _nodeOf[cur], length, from);
+        }
+    }
+
+    private int addNode(int cell) {
+        if (_nodeCount == _nodeCell.length) _nodeCell = Arrays.copyOf(_nodeCell, _nodeCount * 2);
+        _nodeOf[cell] = _nodeCount;
+        _nodeCell[_nodeCount] = cell;
+        return _nodeCount++;
+    }
+
+    private void addEdge(int a, int b, int length, int corridorStart) {
+        if (_edgeCount + 1 == _edgeStart.length) {
+            int size = _edgeCount * 2;
+            _edgeA = Arrays.copyOf(_edgeA, size);
+            _edgeB = Arrays.copyOf(_edgeB, size);
+            _edgeLength = Arrays.copyOf(_edgeLength, size);
+            _edgeStart = Arrays.copyOf(_edgeStart, size + 1);
+        }
+        _edgeA[_edgeCount] = a;
+        _edgeB[_edgeCount] = b;
+        _edgeLength[_edgeCount] = length;
+        _edgeStart[_edgeCount++] = corridorStart;
+    }
+
+    private void buildAdjacency() {
+        _adjStart = new int[_nodeCount + 1];
+        for (int e = 0; e < _edgeCount; e++) {
+            _adjStart[_edgeA[e] + 1]++;
+            _adjStart[_edgeB[e] + 1]++;
+        }
+        for (int v = 0; v < _nodeCount; v++) _adjStart[v + 1] += _adjStart[v];
+        _adj = new int[_adjStart[_nodeCount]];
+        int[] fill = Arrays.copyOf(_adjStart, _nodeCount);
+        for (int e = 0; e < _edgeCount; e++) {
+            _adj[fill[_edgeA[e]]++] = e;
+            _adj[fill[_edgeB[e]]++] = e;
+        }
+    }
+
+    /**
+     * A corridor cell has exactly 2 walkable neighbors (in 2 directions), both other than itself.
+     */
+    private boolean isCorridor(int cell) {
+        int x = cell / _h, y = cell % _h, count = 0, first = -1;
+        for (int dir = 0; dir < 4; dir++) {
+            int nb = BfsKernel.step(x, y, dir, _w, _h, _cyclic);
+            if (nb < 0 || isBlocked(nb)) continue;
+            if (nb == cell || nb == first) return false;
+            if (count++ == 0) first = nb;
+        }
+        return count == 2;
+    }
+
+    /**
+     * The walkable neighbor of the corridor cell cur which is not prev.
+     */
+    private int otherNeighbor(int cur, int prev) {
+        int x = cur / _h, y = cur % _h;
+        for (int dir = 0; dir < 4; dir++) {
+            int nb = BfsKernel.step(x, y, dir, _w, _h, _cyclic);
+            if (nb >= 0 && nb != prev && !isBlocked(nb)) return nb;
+        }
+        return -1;
+    }
+
+    private int cell(int x, int y) {
+        if (x < 0 || x >= _w || y < 0 || y >= _h) return -1;
+        int i = x * _h + y;
+        return isBlocked(i) ? -1 : i;
+    }
+
+    private boolean isBlocked(int i) {
+        return (_blocked[i >> 6] & (1L << i)) != 0;
+    }
+}
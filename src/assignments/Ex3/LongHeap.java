@@ -0,0 +1,53 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * A binary min heap of primitive longs, for the Dijkstra / A* open lists: a key is packed as (priority<<32 | id),
+ * so the smallest priority pops first. Entries are never updated in place - a better one is pushed,
+ * and the stale one is skipped by the caller when it pops.
+ */
+final class LongHeap {
+    private long[] _heap = new long[64];
+    private int _size;
+
+    void push(int priority, int id) {
+        if (_size == _heap.length) _heap = Arrays.copyOf(_heap, _size * 2);
+        long key = ((long) priority << 32) | id;
+        int i = _size++;
+        while (i > 0) {
+            int p = (i - 1) >> 1;
+            if (_heap[p] <= key) break;
+            _heap[i] = _heap[p];
+            i = p;
+        }
+        _heap[i] = key;
+    }
+
+    /**
+     * Removes the smallest entry.
+     * @return its id.
+     */
+    int pop() {
+        long ans = _heap[0], last = _heap[--_size];
+        int i = 0;
+        while (true) {
+            int l = 2 * i + 1;
+            if (l >= _size) break;
+            int m = l + 1 < _size && _heap[l + 1] < _heap[l] ? l + 1 : l;
+            if (_heap[m] >= last) break;
+            _heap[i] = _heap[m];
+            i = m;
+        }
+        _heap[i] = last;
+        return (int) ans;
+    }
+
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    void clear() {
+        _size = 0;
+    }
+}
@@ -1,9 +1,8 @@
 package assignments.Ex3;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Deque;
-import java.util.List;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -12,8 +11,31 @@ import java.util.List;
  *
  */
 public class Map implements Map2D {
-	private int[][] _map;
+	/** The side of the square tiles whose changes are tracked (see changedTiles). */
+	public static final int TILE = 16;
+	static final int TILE_SHIFT = 4;
+	/** x-major: [x][y] at _data[x*_h+y] (a column of fixed x is contiguous, so scan loops should run y innermost). */
+	private int[] _data;
+	private int _w, _h;
 	private boolean _cyclicFlag = true;
+	private BfsKernel _bfs;
+	private AStarKernel _astar;
+	private ScanlineFill _fill;
+	private int _lastVisited;
+	private PathEngine _engine = PathEngine.BFS;
+	private DistanceEngine _distanceEngine = DistanceEngine.BFS;
+	private BitBfs _bits;
+	private ParallelBfs _parallel;
+	private WeightedKernel _weighted;
+	/** Bumped on every change of the cells (or of the cyclic flag), drops cached component labels. */
+	private long _version;
+	private long[] _tiles;       // the version of the last change in each TILE*TILE tile, [tx][ty] at tx*tilesHigh+ty
+	private long _fullVersion;   // the version of the last change of the whole map (init, importFrom, setCyclic)
+	private ComponentLabels _labels;
+	private int _missObs;
+	private long _missVersion = -1;
+	private PathCache _cache;
+	private ColorIndex _index;   // the cells by color, null unless setColorIndex(true)
 	
 	/**
 	 * Constructs a w*h 2D raster map with an init value v.
@@ -35,22 +57,39 @@ public class Map implements Map2D {
 	public Map(int[][] data) {
 		init(data);
 	}
+	/**
+	 * Copy constructor - a single bulk copy of the other map's cells.
+	 * @param other
+	 */
+	public Map(Map other) {
+		_w = other._w;
+		_h = other._h;
+		_data = other._data.clone();
+		_cyclicFlag = other._cyclicFlag;
+		_tiles = new long[tileCount(_w, _h)];
+	}
+	/**
+	 * Constructs a w*h map which adopts (does not copy) the given cells, the entry [x][y] is cells[x*h+y].
+	 */
+	Map(int w, int h, int[] cells) {
+		_w = w;
+		_h = h;
+		_data = cells;
+		_tiles = new long[tileCount(w, h)];
+	}
     @Override
     public void init(int w, int h, int v) {
         if (w <= 0 || h <= 0) {
             throw new RuntimeException("Bad dimensions");
         }
-        _map = new int[w][h];
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                _map[x][y] = v;
-            }
-        }
-
+        allocate(w, h);
+        Arrays.fill(_data, v);
+        _fullVersion = ++_version;
+        if (_index != null) _index = new ColorIndex(_data);
     }
     @Override
     public void init(int[][] arr) {
-        if (arr == null) {
+        if (arr == null || arr.length == 0 || arr[0] == null || arr[0].length == 0) {
             throw new RuntimeException("Bad array");
         }
         int w = arr.length;
@@ -62,43 +101,154 @@ public class Map implements Map2D {
             }
         }
 
-        _map = new int[w][h];
+        if (_data == null || _w != w || _h != h) {
+            allocate(w, h);
+            for (int x = 0; x < w; x++) {
+                System.arraycopy(arr[x], 0, _data, x * h, h);
+            }
+            _fullVersion = ++_version;
+            if (_index != null) _index = new ColorIndex(_data);
+            return;
+        }
+        // the same board again (a new game tick) keeps the version, and so the caches which depend on it;
+        // otherwise only the tiles which differ are copied and stamped.
+        long stamp = _version + 1;
+        int tilesHigh = (h + TILE - 1) >> TILE_SHIFT;
+        boolean changed = false;
         for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                _map[x][y] = arr[x][y];
+            int base = x * h, tileRow = (x >> TILE_SHIFT) * tilesHigh;
+            for (int y = 0; y < h; y += TILE) {
+                int end = Math.min(y + TILE, h);
+                if (!Arrays.equals(_data, base + y, base + end, arr[x], y, end)) {
+                    if (_index != null) {
+                        for (int i = y; i < end; i++) {
+                            if (_data[base + i] != arr[x][i]) _index.set(base + i, _data[base + i], arr[x][i]);
+                        }
+                    }
+                    System.arraycopy(arr[x], y, _data, base + y, end - y);
+                    _tiles[tileRow + (y >> TILE_SHIFT)] = stamp;
+                    changed = true;
+                }
             }
         }
-
+        if (changed) _version = stamp;
     }
 
     @Override
     public int[][] getMap() {
-        int w = getWidth();
-        int h = getHeight();
-        int[][] copy = new int[w][h];
-
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
-                copy[x][y] = _map[x][y];
-            }
+        int[][] copy = new int[_w][_h];
+        for (int x = 0; x < _w; x++) {
+            System.arraycopy(_data, x * _h, copy[x], 0, _h);
         }
         return copy;
     }
 
+    /**
+     * A zero-copy, read-only view of this map's cells.
+     * The entry [x][y] is at index x*getHeight()+y, and the view reflects later changes to this map.
+     * @return a read-only buffer over the underlying cells.
+     */
+    public IntBuffer view() {
+        return IntBuffer.wrap(_data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Bulk copy of all the cells (x*getHeight()+y order) into dst.
+     * @param dst an array of at least getWidth()*getHeight() entries.
+     */
+    public void exportTo(int[] dst) {
+        System.arraycopy(_data, 0, dst, 0, _data.length);
+    }
+
+    /**
+     * Bulk copy of all the cells (x*getHeight()+y order) from src, keeping the current dimensions.
+     * @param src an array of at least getWidth()*getHeight() entries.
+     */
+    public void importFrom(int[] src) {
+        System.arraycopy(src, 0, _data, 0, _data.length);
+        _fullVersion = ++_version;
+        if (_index != null) _index = new ColorIndex(_data);
+    }
+
+    /**
+     * @return the number of cells of the given color: O(1) with a color index, a single bulk scan (see BulkOps) otherwise.
+     */
+    public int count(int color) {
+        if (_index != null) return _index.count(color);
+        return BulkOps.count(_data, 0, _data.length, color);
+    }
+
+    /**
+     * @return the cells of the given color: O(k) for k cells with a color index (in no particular order),
+     * a scan of the map otherwise (in x then y order).
+     */
+    public Pixel2D[] cellsOf(int color) {
+        Pixel2D[] ans = new Pixel2D[count(color)];
+        if (_index != null) {
+            int[] cells = _index.cells(color);
+            for (int i = 0; i < ans.length; i++) ans[i] = new Index2D(cells[i] / _h, cells[i] % _h);
+            return ans;
+        }
+        int n = _data.length, k = 0;
+        for (int i = BulkOps.indexOf(_data, 0, n, color); i >= 0; i = BulkOps.indexOf(_data, i + 1, n, color)) {
+            ans[k++] = new Index2D(i / _h, i % _h);
+        }
+        return ans;
+    }
+
+    /**
+     * Keeps (or drops) an index of the cells by color, for count and cellsOf.
+     * It is built in a single pass, then every change of a cell (setPixel, fill, init, replace...) updates it in O(1),
+     * so it pays off when a few colors are counted or listed every tick, e.g. the pellets left on a board.
+     */
+    public void setColorIndex(boolean on) {
+        if (!on) _index = null;
+        else if (_index == null) _index = new ColorIndex(_data);
+    }
+
+    public boolean hasColorIndex() {
+        return _index != null;
+    }
+
+    /**
+     * Replaces every oldColor cell by newColor in bulk, tile by tile: only the tiles which had such cells are
+     * written and stamped as changed (see changedTiles).
+     * @return the number of cells replaced.
+     */
+    public int replace(int oldColor, int newColor) {
+        if (oldColor == newColor) return 0;
+        long stamp = _version + 1;
+        int tilesHigh = (_h + TILE - 1) >> TILE_SHIFT, ans = 0;
+        for (int x = 0; x < _w; x++) {
+            int base = x * _h, tileRow = (x >> TILE_SHIFT) * tilesHigh;
+            for (int y = 0; y < _h; y += TILE) {
+                int replaced = BulkOps.replace(_data, base + y, base + Math.min(y + TILE, _h), oldColor, newColor);
+                if (replaced > 0) {
+                    _tiles[tileRow + (y >> TILE_SHIFT)] = stamp;
+                    ans += replaced;
+                }
+            }
+        }
+        if (ans > 0) {
+            _version = stamp;
+            if (_index != null) _index.replaceAll(oldColor, newColor);
+        }
+        return ans;
+    }
 
     @Override
     public int getWidth() {
-        return _map.length;
+        return _w;
     }
 
     @Override
     public int getHeight() {
-        return _map[0].length;
+        return _h;
     }
 
     @Override
     public int getPixel(int x, int y) {
-        return _map[x][y];
+        return _data[index(x, y)];
     }
 
 	@Override
@@ -109,7 +259,10 @@ public class Map implements Map2D {
 
     @Override
     public void setPixel(int x, int y, int v) {
-        _map[x][y] = v;
+        int i = index(x, y);
+        if (_index != null && _data[i] != v) _index.set(i, _data[i], v);
+        _data[i] = v;
+        _tiles[(x >> TILE_SHIFT) * ((_h + TILE - 1) >> TILE_SHIFT) + (y >> TILE_SHIFT)] = ++_version;
     }
 
     @Override
@@ -120,6 +273,7 @@ public class Map implements Map2D {
 	@Override
 	/** 
 	 * Fills this map with the new color (new_v) starting from p.
+	 * A span (scanline) fill: whole runs of the old color are filled at once.
 	 * https://en.wikipedia.org/wiki/Flood_fill
 	 */
     public int fill(Pixel2D xy, int new_v) {
@@ -132,38 +286,8 @@ public class Map implements Map2D {
         int old = getPixel(sx, sy);
         if (old == new_v) return 0;
 
-        java.util.ArrayDeque<Pixel2D> q = new java.util.ArrayDeque<>();
-        q.add(new Index2D(sx, sy));
-        setPixel(sx, sy, new_v);
-        int count = 1;
-
-        while (!q.isEmpty()) {
-            Pixel2D p = q.removeFirst();
-            int x = p.getX();
-            int y = p.getY();
-
-            int[] dx = {1, -1, 0, 0};
-            int[] dy = {0, 0, 1, -1};
-
-            for (int i = 0; i < 4; i++) {
-                int nx = x + dx[i];
-                int ny = y + dy[i];
-
-                if (_cyclicFlag) {
-                    nx = ((nx % getWidth()) + getWidth()) % getWidth();
-                    ny = ((ny % getHeight()) + getHeight()) % getHeight();
-                } else {
-                    if (nx < 0 || nx >= getWidth() || ny < 0 || ny >= getHeight()) continue;
-                }
-
-                if (getPixel(nx, ny) == old) {
-                    setPixel(nx, ny, new_v);
-                    q.add(new Index2D(nx, ny));
-                    count++;
-                }
-            }
-        }
-        return count;
+        if (_fill == null) _fill = new ScanlineFill();
+        return _fill.fill(_data, _w, _h, _cyclicFlag, index(sx, sy), old, new_v, _tiles, ++_version, _index);
     }
 
 	@Override
@@ -172,53 +296,95 @@ public class Map implements Map2D {
 	 * https://en.wikipedia.org/wiki/Breadth-first_search
 	 */
     public Pixel2D[] shortestPath(Pixel2D p1, Pixel2D p2, int obsColor) {
-        if (p1 == null || p2 == null) return null;
-        if (!isInside(p1) || !isInside(p2)) return null;
-
-        if (getPixel(p1) == obsColor || getPixel(p2) == obsColor) return null;
-
-        if (p1.equals(p2)) {
-            return new Pixel2D[]{ new Index2D(p1) };
-        }
+        return shortestPath(p1, p2, obsColor, _engine);
+    }
 
-        int w = getWidth(), h = getHeight();
-        boolean[][] visited = new boolean[w][h];
-        Pixel2D[][] parent = new Pixel2D[w][h];
+    /**
+     * Same as shortestPath(p1, p2, obsColor) but runs the given engine instead of this map's default one.
+     * @param engine the search algorithm to use.
+     */
+    public Pixel2D[] shortestPath(Pixel2D p1, Pixel2D p2, int obsColor, PathEngine engine) {
+        PathBuffer ans = new PathBuffer();
+        return shortestPath(p1, p2, obsColor, engine, ans) ? ans.toArray() : null;
+    }
 
-        Deque<Pixel2D> q = new ArrayDeque<>();
-        q.add(new Index2D(p1));
-        visited[p1.getX()][p1.getY()] = true;
+    /**
+     * Same as shortestPath(p1, p2, obsColor) but writes the path to out (as packed cells) instead of allocating a point per cell.
+     * @param out the buffer to fill, cleared if there is no path.
+     * @return true if there is a path.
+     */
+    public boolean shortestPath(Pixel2D p1, Pixel2D p2, int obsColor, PathBuffer out) {
+        return shortestPath(p1, p2, obsColor, _engine, out);
+    }
 
-        while (!q.isEmpty()) {
-            Pixel2D cur = q.removeFirst();
-            if (cur.equals(p2)) break;
+    /**
+     * Same as shortestPath(p1, p2, obsColor, out) but runs the given engine instead of this map's default one.
+     */
+    public boolean shortestPath(Pixel2D p1, Pixel2D p2, int obsColor, PathEngine engine, PathBuffer out) {
+        out.clear();
+        if (p1 == null || p2 == null) return false;
+        if (!isInside(p1) || !isInside(p2)) return false;
 
-            for (Pixel2D nb : neighbors(cur, _cyclicFlag)) {
-                int nx = nb.getX(), ny = nb.getY();
-                if (visited[nx][ny]) continue;
-                if (getPixel(nx, ny) == obsColor) continue;
+        if (getPixel(p1) == obsColor || getPixel(p2) == obsColor) return false;
 
-                visited[nx][ny] = true;
-                parent[nx][ny] = cur;
-                q.addLast(nb);
-            }
+        int src = index(p1.getX(), p1.getY()), dst = index(p2.getX(), p2.getY());
+        if (src == dst) {
+            out.begin(1, _h)[0] = src;
+            return true;
+        }
+        if (_labels != null && _labels.isValid(obsColor, _version) && _labels.label(src) != _labels.label(dst)) {
+            _lastVisited = 0; // different components, no search needed
+            return false;
+        }
+        if (_cache != null && _cache.path(_version, src, dst, obsColor, _h, out)) {
+            _lastVisited = 0;
+            return !out.isEmpty();
         }
+        boolean found;
+        if (engine == PathEngine.ASTAR) {
+            if (_astar == null) _astar = new AStarKernel();
+            found = _astar.astar(_data, _w, _h, _cyclicFlag, src, dst, obsColor, out);
+            _lastVisited = _astar.lastVisited();
+        } else if (engine == PathEngine.BIDIRECTIONAL) {
+            found = kernel().bidirectional(_data, _w, _h, _cyclicFlag, src, dst, obsColor, out);
+            _lastVisited = _bfs.lastVisited();
+        } else {
+            int d = kernel().search(_data, _w, _h, _cyclicFlag, src, dst, obsColor, null);
+            found = d >= 0;
+            if (found) _bfs.path(dst, d, _h, out);
+            _lastVisited = _bfs.lastVisited();
+        }
+        if (!found) {
+            out.clear();
+            noPath(obsColor);
+        }
+        if (_cache != null) _cache.putPath(_version, src, dst, obsColor, out);
+        return found;
+    }
 
-        if (!visited[p2.getX()][p2.getY()]) return null;
+    /**
+     * @return the engine shortestPath(p1, p2, obsColor) runs.
+     */
+    public PathEngine getPathEngine() {
+        return _engine;
+    }
 
-        List<Pixel2D> rev = new ArrayList<>();
-        Pixel2D cur = p2;
-        while (cur != null) {
-            rev.add(new Index2D(cur));
-            if (cur.equals(p1)) break;
-            cur = parent[cur.getX()][cur.getY()];
+    /**
+     * Sets the engine shortestPath(p1, p2, obsColor) runs.
+     * @param engine the search algorithm, not null.
+     */
+    public void setPathEngine(PathEngine engine) {
+        if (engine == null) {
+            throw new RuntimeException("Null engine");
         }
+        _engine = engine;
+    }
 
-        Pixel2D[] path = new Pixel2D[rev.size()];
-        for (int i = 0; i < rev.size(); i++) {
-            path[i] = rev.get(rev.size() - 1 - i);
-        }
-        return path;
+    /**
+     * @return the number of cells reached by the last shortestPath or allDistance search of this map (0 if none).
+     */
+    public int lastSearchVisited() {
+        return _lastVisited;
     }
 
     @Override
@@ -237,82 +403,330 @@ public class Map implements Map2D {
 
     @Override
     public void setCyclic(boolean cy) {
+        if (cy != _cyclicFlag) _fullVersion = ++_version;
         _cyclicFlag = cy;
     }
 
 
     @Override
     public Map2D allDistance(Pixel2D start, int obsColor) {
+        return allDistance(start, obsColor, _distanceEngine);
+    }
+
+    /**
+     * Same as allDistance(start, obsColor) but runs the given engine instead of this map's default one.
+     * @param engine the algorithm to use.
+     */
+    public Map2D allDistance(Pixel2D start, int obsColor, DistanceEngine engine) {
         if (start == null) return null;
         if (!isInside(start)) return null;
 
         int w = getWidth(), h = getHeight();
+        if (getPixel(start) == obsColor) return new Map(w, h, -1);
+
+        int src = index(start.getX(), start.getY());
+        if (_cache != null) {
+            Map hit = _cache.distances(_version, src, obsColor);
+            if (hit != null) {
+                _lastVisited = 0;
+                return new Map(hit);
+            }
+        }
         Map ans = new Map(w, h, -1);
+        if (engine == DistanceEngine.BIT_PARALLEL) {
+            if (_bits == null) _bits = new BitBfs();
+            _lastVisited = _bits.search(_data, w, h, _cyclicFlag, src, obsColor, _version, ans._data);
+        } else if (engine == DistanceEngine.PARALLEL && w * h >= ParallelBfs.MIN_CELLS) {
+            if (_parallel == null) _parallel = new ParallelBfs(ForkJoinPool.commonPool());
+            _lastVisited = _parallel.search(_data, w, h, _cyclicFlag, src, obsColor, ans._data);
+        } else { // BFS, or PARALLEL on a small map
+            kernel().search(_data, w, h, _cyclicFlag, src, -1, obsColor, ans._data);
+            _lastVisited = _bfs.lastVisited();
+        }
+        if (_cache != null) _cache.putDistances(_version, src, obsColor, new Map(ans));
+        return ans;
+    }
 
-        if (getPixel(start) == obsColor) return ans;
+    /**
+     * @return the engine allDistance(start, obsColor) runs.
+     */
+    public DistanceEngine getDistanceEngine() {
+        return _distanceEngine;
+    }
 
-        boolean[][] visited = new boolean[w][h];
-        Deque<Pixel2D> q = new ArrayDeque<>();
+    /**
+     * Sets the engine allDistance(start, obsColor) runs.
+     * @param engine the algorithm, not null.
+     */
+    public void setDistanceEngine(DistanceEngine engine) {
+        if (engine == null) {
+            throw new RuntimeException("Null engine");
+        }
+        _distanceEngine = engine;
+    }
 
-        ans.setPixel(start, 0);
-        visited[start.getX()][start.getY()] = true;
-        q.addLast(new Index2D(start));
+    /**
+     * @return the modification version: it grows with every change of the cells or the topology
+     * (setPixel, fill, init, importFrom, setCyclic) and only then.
+     * It is a long (as are the tile stamps), so it does not wrap around however long a map is kept.
+     */
+    public long getVersion() {
+        return _version;
+    }
 
-        while (!q.isEmpty()) {
-            Pixel2D cur = q.removeFirst();
-            int curDist = ans.getPixel(cur);
+    /**
+     * @return true if this map changed after it was at the given version (see getVersion).
+     */
+    public boolean changedSince(long version) {
+        return _version != version;
+    }
 
-            for (Pixel2D nb : neighbors(cur, _cyclicFlag)) {
-                int nx = nb.getX(), ny = nb.getY();
-                if (visited[nx][ny]) continue;
-                if (getPixel(nx, ny) == obsColor) continue;
+    /**
+     * @return true if the TILE*TILE tile of [x][y] may have changed after the given version
+     * (always true after a change of the whole map: init, importFrom or setCyclic).
+     */
+    public boolean isChanged(int x, int y, long version) {
+        index(x, y);
+        return _fullVersion > version || _tiles[(x >> TILE_SHIFT) * ((_h + TILE - 1) >> TILE_SHIFT) + (y >> TILE_SHIFT)] > version;
+    }
 
-                visited[nx][ny] = true;
-                ans.setPixel(nx, ny, curDist + 1);
-                q.addLast(nb);
-            }
+    /**
+     * The changes since a version, at the tile level: every returned point is the first cell [x][y] of a tile
+     * (both multiples of TILE) which changed after the given version, the tile covers the cells
+     * [x, x+TILE) * [y, y+TILE) inside the map. All the tiles are returned after a change of the whole map.
+     * There is nothing to clear: a caller keeps the version it has seen (getVersion) and asks for the changes since then,
+     * so several callers do not disturb each other.
+     * @param version an earlier getVersion().
+     * @return the changed tiles, in x then y order (an empty array if nothing changed).
+     */
+    public Pixel2D[] changedTiles(long version) {
+        int tilesHigh = (_h + TILE - 1) >> TILE_SHIFT;
+        boolean all = _fullVersion > version;
+        int count = 0;
+        for (int t = 0; t < _tiles.length; t++) {
+            if (all || _tiles[t] > version) count++;
+        }
+        Pixel2D[] ans = new Pixel2D[count];
+        count = 0;
+        for (int t = 0; t < _tiles.length; t++) {
+            if (all || _tiles[t] > version) ans[count++] = new Index2D(t / tilesHigh * TILE, t % tilesHigh * TILE);
+        }
+        return ans;
+    }
+
+    /**
+     * Puts an LRU cache of up to capacity results in front of shortestPath and allDistance (0 removes it, the default).
+     * Repeated queries on an unchanged map are then a lookup; any change to the map drops the cached results.
+     * Cached distance maps are copied out on every hit, so it pays off for paths more than for large distance maps.
+     */
+    public void setPathCacheSize(int capacity) {
+        if (capacity < 0) {
+            throw new RuntimeException("Bad capacity");
         }
+        _cache = capacity == 0 ? null : new PathCache(capacity, _version);
+    }
+
+    /**
+     * @return the cache set by setPathCacheSize (for its hit, miss and eviction counters), null if there is none.
+     */
+    public PathCache getPathCache() {
+        return _cache;
+    }
+
+    /**
+     * The least cost of reaching every cell from start, where entering a cell costs its cost in costs
+     * (start itself is free). Runs a 0-1 BFS when every cost is 0 or 1, and Dijkstra over a bucket queue otherwise.
+     * @return a map of the least costs, -1 for unreachable cells (all of them if start is blocked), null if start is outside.
+     */
+    public Map2D weightedDistance(Pixel2D start, CellCosts costs) {
+        if (start == null || !isInside(start)) return null;
+        Map ans = new Map(_w, _h, -1);
+        int src = index(start.getX(), start.getY());
+        weighted().search(_data, _w, _h, _cyclicFlag, src, costs, -1, null, ans._data);
+        _lastVisited = _weighted.lastVisited();
         return ans;
     }
 
+    /**
+     * A least cost path from p1 to p2 (see weightedDistance), written to out.
+     * @return its cost, -1 if there is no such path (out is then empty).
+     */
+    public int weightedPath(Pixel2D p1, Pixel2D p2, CellCosts costs, PathBuffer out) {
+        out.clear();
+        if (p1 == null || p2 == null || !isInside(p1) || !isInside(p2)) return -1;
+        int src = index(p1.getX(), p1.getY()), dst = index(p2.getX(), p2.getY());
+        int found = weighted().search(_data, _w, _h, _cyclicFlag, src, costs, dst, null, null);
+        _lastVisited = _weighted.lastVisited();
+        if (found < 0) return -1;
+        _weighted.path(found, _h, out);
+        return _weighted.distance(found);
+    }
+
+    /**
+     * Same as weightedPath(p1, p2, costs, out), as an array of points.
+     * @return the path, null if there is none.
+     */
+    public Pixel2D[] weightedPath(Pixel2D p1, Pixel2D p2, CellCosts costs) {
+        PathBuffer ans = new PathBuffer();
+        return weightedPath(p1, p2, costs, ans) < 0 ? null : ans.toArray();
+    }
+
+    /**
+     * A least cost path from start to the cheapest cell (other than start) whose color is one of targetColors,
+     * in a single search which stops as soon as that cell is known.
+     * @return the cost of the path written to out, -1 if no such cell can be reached (out is then empty).
+     */
+    public int weightedPathToNearest(Pixel2D start, CellCosts costs, int[] targetColors, PathBuffer out) {
+        out.clear();
+        if (start == null || !isInside(start)) return -1;
+        int src = index(start.getX(), start.getY());
+        int found = weighted().search(_data, _w, _h, _cyclicFlag, src, costs, -1, targetColors, null);
+        _lastVisited = _weighted.lastVisited();
+        if (found < 0) return -1;
+        _weighted.path(found, _h, out);
+        return _weighted.distance(found);
+    }
+
+    /**
+     * Computes, in a single BFS, the distance from every cell to its nearest source (obstacle avoiding),
+     * and which source that is. The cost does not depend on the number of sources.
+     * Sources which are null, outside this map or obstacles are ignored.
+     * @param sources the source points.
+     * @param obsColor the color representing obstacles.
+     * @return the nearest source field: unreachable cells have distance -1 and owner -1.
+     */
+    public NearestSource multiSourceDistance(Pixel2D[] sources, int obsColor) {
+        if (sources == null) return null;
+        int[] src = new int[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            src[i] = isInside(sources[i]) ? index(sources[i].getX(), sources[i].getY()) : -1;
+        }
+        Map dist = new Map(_w, _h, -1);
+        Map owner = new Map(_w, _h, -1);
+        kernel().multiSource(_data, _w, _h, _cyclicFlag, src, obsColor, dist._data, owner._data);
+        _lastVisited = _bfs.lastVisited();
+        return new NearestSource(dist, owner);
+    }
+
+    /**
+     * Finds the k cells of color (other than start) nearest to start, in a single BFS which stops as soon as
+     * the k'th one is reached - so a near target costs a small part of allDistance, and no second search is needed
+     * for its path's first step. On a tie at the same distance the cell the BFS reaches first is taken.
+     * @param k the number of targets wanted (at least 1).
+     * @param obsColor the color representing obstacles.
+     * @return the targets found (fewer than k if fewer can be reached), none if start is outside or an obstacle.
+     */
+    public NearestTargets nearestOfColor(Pixel2D start, int color, int k, int obsColor) {
+        if (k < 1) throw new RuntimeException("Bad k");
+        int[] found = new int[Math.min(k, _w * _h)];
+        int count = 0;
+        if (isInside(start) && getPixel(start) != obsColor) {
+            count = kernel().nearest(_data, _w, _h, _cyclicFlag, index(start.getX(), start.getY()), color, k,
+                    obsColor, found, null, 0);
+            _lastVisited = _bfs.lastVisited();
+        }
+        return NearestTargets.of(_bfs, found, count, _h);
+    }
+
+    /**
+     * @return true iff there is an obstacle avoiding path between p1 and p2 (both inside this map and not obstacles).
+     * The first call after a change labels the components of the whole map, later calls are O(1).
+     */
+    public boolean isConnected(Pixel2D p1, Pixel2D p2, int obsColor) {
+        if (!isInside(p1) || !isInside(p2)) return false;
+        int a = labels(obsColor).label(index(p1.getX(), p1.getY()));
+        return a >= 0 && a == _labels.label(index(p2.getX(), p2.getY()));
+    }
+
+    /**
+     * @return the number of cells reachable from p (including p), 0 if p is an obstacle or outside this map.
+     * The first call after a change labels the components of the whole map, later calls are O(1).
+     */
+    public int componentSize(Pixel2D p, int obsColor) {
+        if (!isInside(p)) return 0;
+        return labels(obsColor).size(index(p.getX(), p.getY()));
+    }
+
+    /**
+     * @return the number of connected regions of the cells which are not obsColor.
+     */
+    public int componentCount(int obsColor) {
+        return labels(obsColor).count();
+    }
+
+    /**
+     * The live cells of this map (the entry [x][y] is at x*h+y), for the package's search structures.
+     * The array is replaced when init changes the number of cells.
+     */
+    int[] cells() {
+        return _data;
+    }
+
     ////////////////////// Private Methods ///////////////////////
     /**
-     * Returns all valid neighboring pixels of the given pixel p.
-     * A neighbor is defined as a pixel that is one step away in one of the four cardinal directions: up, down, left, or right.
-     * Diagonal neighbors are not included.
-     * If cyclic is false, only neighbors that are inside the map boundaries are returned.
-     * If cyclic is true, the map is treated as cyclic, meaning that neighbors that go beyond one edge wrap around to the opposite edge.
-     * The method always returns an array of assignments.Ex3.Pixel2D objects, containing up to four neighbors.
-     * @param p
-     * @param cyclic
-     * @return
-     */
-    private Pixel2D[] neighbors(Pixel2D p, boolean cyclic) {
-        int x = p.getX(), y = p.getY();
-        int w = getWidth(), h = getHeight();
+     * Returns the flat index of [x][y], throws ArrayIndexOutOfBoundsException if it is outside this map.
+     */
+    private int index(int x, int y) {
+        if ((x | y) < 0 || x >= _w || y >= _h) {
+            throw new ArrayIndexOutOfBoundsException("(" + x + "," + y + ") is outside " + _w + "x" + _h);
+        }
+        return x * _h + y;
+    }
 
-        int[] dx = {1, -1, 0, 0};
-        int[] dy = {0, 0, 1, -1};
+    /**
+     * Sets the dimensions, reusing the current storage when the number of cells did not change.
+     */
+    private void allocate(int w, int h) {
+        if (_data == null || _data.length != w * h) {
+            _data = new int[w * h];
+        }
+        if (_tiles == null || _w != w || _h != h) {
+            _tiles = new long[tileCount(w, h)];
+        }
+        _w = w;
+        _h = h;
+    }
 
-        List<Pixel2D> ans = new ArrayList<>(4);
+    private static int tileCount(int w, int h) {
+        return ((w + TILE - 1) >> TILE_SHIFT) * ((h + TILE - 1) >> TILE_SHIFT);
+    }
 
-        for (int i = 0; i < 4; i++) {
-            int nx = x + dx[i];
-            int ny = y + dy[i];
+    /**
+     * The component labels of obsColor for the current cells, relabelled only after a change.
+     */
+    private ComponentLabels labels(int obsColor) {
+        if (_labels == null || !_labels.isValid(obsColor, _version)) {
+            _labels = new ComponentLabels(_data, _w, _h, _cyclicFlag, obsColor, _version);
+        }
+        return _labels;
+    }
 
-            if (cyclic) {
-                if (nx < 0) nx = w - 1;
-                if (nx >= w) nx = 0;
-                if (ny < 0) ny = h - 1;
-                if (ny >= h) ny = 0;
-                ans.add(new Index2D(nx, ny));
-            } else {
-                if (nx >= 0 && nx < w && ny >= 0 && ny < h) {
-                    ans.add(new Index2D(nx, ny));
-                }
-            }
+    /**
+     * Called when a search found no path: a second miss on the same (unchanged) map labels its components,
+     * so the following unreachable queries are rejected without a search.
+     */
+    private void noPath(int obsColor) {
+        if (_missVersion == _version && _missObs == obsColor) {
+            labels(obsColor);
+        } else {
+            _missVersion = _version;
+            _missObs = obsColor;
         }
-        return ans.toArray(new Pixel2D[0]);
     }
-}
 
+    /**
+     * The weighted search kernel of this map, created on first use.
+     */
+    private WeightedKernel weighted() {
+        if (_weighted == null) _weighted = new WeightedKernel();
+        return _weighted;
+    }
+
+    /**
+     * The BFS kernel (and its scratch buffers) of this map, created on first use.
+     */
+    private BfsKernel kernel() {
+        if (_bfs == null) _bfs = new BfsKernel();
+        return _bfs;
+    }
+}
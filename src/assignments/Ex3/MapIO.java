@@ -0,0 +1,144 @@
+package assignments.Ex3;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and loads maps in a compact binary snapshot format:
+ * a 16 bytes header - the magic "I2MP", the width and the height (ints), a flags byte (bit 0: cyclic),
+ * the cell size in bytes (1, 2 or 4) and 2 padding bytes - followed by the w*h cells in Map's
+ * order (the entry [x][y] is cell x*h+y), all little-endian.
+ * save picks the smallest cell size which holds all the values; load maps the file (FileChannel.map)
+ * and decodes the body in a single pass, straight into the cells of the new map.
+ * The older .bit files (a Java serialized int[][]) are read by importBit only, load does not deserialize.
+ */
+public final class MapIO {
+    /** "I2MP" */
+    public static final int MAGIC = 0x504D3249;
+    static final int HEADER = 16;
+    private static final int CYCLIC = 1;
+
+    private MapIO() {}
+
+    /**
+     * Writes the map to file (replacing it), in the snapshot format.
+     */
+    public static void save(Map2D map, Path file) throws IOException {
+        int w = map.getWidth(), h = map.getHeight();
+        int[] cells;
+        if (map instanceof Map) {
+            cells = ((Map) map).cells();
+        } else {
+            cells = new int[w * h];
+            for (int x = 0; x < w; x++) {
+                for (int y = 0; y < h; y++) cells[x * h + y] = map.getPixel(x, y);
+            }
+        }
+        int size = cellSize(cells);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER + cells.length * size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(w).putInt(h).put((byte) (map.isCyclic() ? CYCLIC : 0)).put((byte) size);
+        buf.position(HEADER);
+        if (size == 4) {
+            buf.asIntBuffer().put(cells);
+        } else if (size == 2) {
+            for (int v : cells) buf.putShort((short) v);
+        } else {
+            for (int v : cells) buf.put((byte) v);
+        }
+        buf.rewind();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+    }
+
+    /**
+     * Reads a map saved by save (an old .bit file is not one, see importBit).
+     * @throws RuntimeException if the file is not a map file.
+     */
+    public static Map load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = ch.size();
+            if (length < HEADER) {
+                throw new RuntimeException("Not a map file: " + file);
+            }
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            int w = buf.getInt(4), h = buf.getInt(8), flags = buf.get(12), size = buf.get(13);
+            if (buf.getInt(0) != MAGIC || w <= 0 || h <= 0 || (size != 1 && size != 2 && size != 4)
+                    || length < HEADER + (long) w * h * size) {
+                throw new RuntimeException("Not a map file: " + file);
+            }
+            int[] cells = new int[w * h];
+            buf.position(HEADER);
+            if (size == 4) {
+                buf.asIntBuffer().get(cells); // a single bulk copy
+            } else if (size == 2) {
+                for (int i = 0; i < cells.length; i++) cells[i] = buf.getShort(HEADER + 2 * i);
+            } else {
+                for (int i = 0; i < cells.length; i++) cells[i] = buf.get(HEADER + i);
+            }
+            Map ans = new Map(w, h, cells);
+            ans.setCyclic((flags & CYCLIC) != 0);
+            return ans;
+        }
+    }
+
+    /**
+     * Reads an old .bit map file: a Java serialized int[][] (the entry [x][y]), as a (cyclic) map.
+     * The stream is filtered before anything is read: only int[][] and int[] are accepted, at most 2 levels deep,
+     * and no array or stream larger than the file could hold as a map - so no other object is ever built.
+     * @throws RuntimeException if the file does not hold an int[][].
+     */
+    public static Map importBit(Path file) throws IOException {
+        long limit = Files.size(file);
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            in.setObjectInputFilter(info -> mapFilter(info, limit));
+            Object arr = in.readObject();
+            if (!(arr instanceof int[][])) {
+                throw new RuntimeException("Not a map file: " + file);
+            }
+            return new Map((int[][]) arr);
+        } catch (ClassNotFoundException | InvalidClassException e) {
+            throw new RuntimeException("Not a map file: " + file);
+        }
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    /**
+     * The deserialization filter of importBit: an int[][] of int[] rows, whose sizes fit in a file of limit bytes
+     * (every int takes 4 bytes of the stream, every row more than 1).
+     */
+    private static ObjectInputFilter.Status mapFilter(ObjectInputFilter.FilterInfo info, long limit) {
+        if (info.depth() > 2 || info.arrayLength() > limit || info.streamBytes() > limit) {
+            return ObjectInputFilter.Status.REJECTED;
+        }
+        Class<?> c = info.serialClass();
+        if (c == null) return ObjectInputFilter.Status.UNDECIDED; // a reference or a limits only check
+        return c == int[][].class || c == int[].class ? ObjectInputFilter.Status.ALLOWED : ObjectInputFilter.Status.REJECTED;
+    }
+
+    /**
+     * @return the smallest number of bytes (1, 2 or 4) which holds every value.
+     */
+    private static int cellSize(int[] cells) {
+        int min = 0, max = 0;
+        for (int v : cells) {
+            if (v < min) min = v;
+            if (v > max) max = v;
+        }
+        if (min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE) return 1;
+        if (min >= Short.MIN_VALUE && max <= Short.MAX_VALUE) return 2;
+        return 4;
+    }
+}
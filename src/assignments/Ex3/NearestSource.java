@@ -0,0 +1,43 @@
+package assignments.Ex3;
+
+/**
+ * The result of Map.multiSourceDistance: for every cell, the shortest path distance to the nearest
+ * source, and the index (in the sources array) of that source. Unreachable cells have -1 in both.
+ */
+public class NearestSource {
+    private final Map2D _distance;
+    private final Map2D _owner;
+
+    public NearestSource(Map2D distance, Map2D owner) {
+        _distance = distance;
+        _owner = owner;
+    }
+
+    /**
+     * @return the distance from [x][y] to its nearest source, -1 if no source can be reached.
+     */
+    public int getDistance(int x, int y) {
+        return _distance.getPixel(x, y);
+    }
+
+    /**
+     * @return the index of the source nearest to [x][y], -1 if no source can be reached.
+     */
+    public int getOwner(int x, int y) {
+        return _owner.getPixel(x, y);
+    }
+
+    /**
+     * @return the distances as a map (same dimensions as the searched map).
+     */
+    public Map2D getDistanceMap() {
+        return _distance;
+    }
+
+    /**
+     * @return the owning sources as a map (same dimensions as the searched map).
+     */
+    public Map2D getOwnerMap() {
+        return _owner;
+    }
+}
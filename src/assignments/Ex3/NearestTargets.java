@@ -0,0 +1,60 @@
+package assignments.Ex3;
+
+/**
+ * The result of Map.nearestOfColor: the cells of a color nearest to a start cell, ordered by their
+ * shortest path distance, each with its distance and the first step (a neighbor of start) of a shortest path to it.
+ */
+public class NearestTargets {
+    private final int[] _cells;
+    private final int[] _dist;
+    private final int[] _first;
+    private final int _h;
+
+    NearestTargets(int[] cells, int[] dist, int[] first, int h) {
+        _cells = cells;
+        _dist = dist;
+        _first = first;
+        _h = h;
+    }
+
+    /**
+     * The targets found by the last kernel.nearest search (the first count cells of found).
+     */
+    static NearestTargets of(BfsKernel kernel, int[] found, int count, int h) {
+        int[] cells = new int[count], dist = new int[count], first = new int[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = found[i];
+            dist[i] = kernel.distance(found[i]);
+            first[i] = kernel.firstStep(found[i]);
+        }
+        return new NearestTargets(cells, dist, first, h);
+    }
+
+    /**
+     * @return the number of targets found (at most the k asked for).
+     */
+    public int size() {
+        return _cells.length;
+    }
+
+    /**
+     * @return the i'th nearest target.
+     */
+    public Pixel2D getTarget(int i) {
+        return new Index2D(_cells[i] / _h, _cells[i] % _h);
+    }
+
+    /**
+     * @return the shortest path distance from start to the i'th target.
+     */
+    public int getDistance(int i) {
+        return _dist[i];
+    }
+
+    /**
+     * @return the neighbor of start which is the first step of a shortest path to the i'th target.
+     */
+    public Pixel2D getFirstStep(int i) {
+        return new Index2D(_first[i] / _h, _first[i] % _h);
+    }
+}
@@ -0,0 +1,327 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * A copy-on-write view of a base Map: writes go to a small overlay layer - a bitmap of the changed cells
+ * and a primitive open addressing hash of their values - and reads check the overlay first.
+ * The base is never written, so many overlays (or ticks) can share it, and reset() drops the changes in O(changes).
+ * allDistance and shortestPath run the base map's BFS kernel over the base cells, with the cells the overlay
+ * turned into obstacles marked as visited up front; only an overlay which opens a base obstacle falls back
+ * to a full copy. The base must not change its size
+ * while there are changes (call reset() after re-initializing it).
+ */
+public class OverlayMap implements Map2D {
+    private Map _base;
+    private boolean _cyclicFlag;
+    private long[] _dirty;     // 1 bit per cell: the cell has an overlay value
+    private int[] _keys;       // cell+1, 0 for an empty slot
+    private int[] _values;
+    private int[] _log;        // the changed cells, in order
+    private int _size;
+    private BfsKernel _bfs;
+    private int[] _blocked = new int[16]; // the cells which only the overlay makes obstacles
+    private int _blockedCount;
+
+    /**
+     * Wraps base (not copied), with no changes.
+     */
+    public OverlayMap(Map base) {
+        wrap(base);
+    }
+
+    /**
+     * @return the wrapped map.
+     */
+    public Map getBase() {
+        return _base;
+    }
+
+    /**
+     * Drops all the changes, in O(changes).
+     * If the base was re-initialized with another size since, the overlay is rebuilt for the new size.
+     */
+    public void reset() {
+        if (_dirty.length != (_base.cells().length + 63) >>> 6) {
+            wrap(_base);
+            return;
+        }
+        for (int i = 0; i < _size; i++) {
+            int cell = _log[i];
+            _dirty[cell >>> 6] &= ~(1L << cell);
+            _log[i] = slot(cell); // all the slots first: emptying one would cut the probe chains through it
+        }
+        for (int i = 0; i < _size; i++) _keys[_log[i]] = 0;
+        _size = 0;
+    }
+
+    /**
+     * @return the number of cells which have an overlay value.
+     */
+    public int changes() {
+        return _size;
+    }
+
+    /**
+     * Replaces the base with a new w*h map of v, and drops the changes.
+     */
+    @Override
+    public void init(int w, int h, int v) {
+        wrap(new Map(w, h, v));
+    }
+
+    /**
+     * Replaces the base with a new map of arr, and drops the changes.
+     */
+    @Override
+    public void init(int[][] arr) {
+        wrap(new Map(arr));
+    }
+
+    @Override
+    public int[][] getMap() {
+        int[][] ans = _base.getMap();
+        int h = getHeight();
+        for (int i = 0; i < _size; i++) {
+            int cell = _log[i];
+            ans[cell / h][cell % h] = _values[slot(cell)];
+        }
+        return ans;
+    }
+
+    @Override
+    public int getWidth() {
+        return _base.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return _base.getHeight();
+    }
+
+    @Override
+    public int getPixel(int x, int y) {
+        return get(index(x, y));
+    }
+
+    @Override
+    public int getPixel(Pixel2D p) {
+        return getPixel(p.getX(), p.getY());
+    }
+
+    @Override
+    public void setPixel(int x, int y, int v) {
+        set(index(x, y), v);
+    }
+
+    @Override
+    public void setPixel(Pixel2D p, int v) {
+        setPixel(p.getX(), p.getY(), v);
+    }
+
+    @Override
+    public boolean isInside(Pixel2D p) {
+        return _base.isInside(p);
+    }
+
+    @Override
+    public boolean isCyclic() {
+        return _cyclicFlag;
+    }
+
+    @Override
+    public void setCyclic(boolean cy) {
+        _cyclicFlag = cy;
+    }
+
+    /**
+     * Fills the component of p with new_v, in the overlay.
+     */
+    @Override
+    public int fill(Pixel2D p, int new_v) {
+        if (!isInside(p)) return 0;
+        int w = getWidth(), h = getHeight();
+        int start = index(p.getX(), p.getY()), old = get(start);
+        if (old == new_v) return 0;
+        int[] stack = new int[64];
+        int top = 0, count = 0;
+        stack[top++] = start;
+        set(start, new_v);
+        while (top > 0) {
+            int cur = stack[--top], x = cur / h, y = cur - x * h;
+            count++;
+            for (int dir = 0; dir < 4; dir++) {
+                int nb = BfsKernel.step(x, y, dir, w, h, _cyclicFlag);
+                if (nb < 0 || get(nb) != old) continue;
+                set(nb, new_v);
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = nb;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Pixel2D[] shortestPath(Pixel2D p1, Pixel2D p2, int obsColor) {
+        PathBuffer ans = new PathBuffer();
+        return shortestPath(p1, p2, obsColor, ans) ? ans.toArray() : null;
+    }
+
+    /**
+     * Same as shortestPath(p1, p2, obsColor) but writes the path to out (as packed cells), see Map.
+     * @return true if there is a path.
+     */
+    public boolean shortestPath(Pixel2D p1, Pixel2D p2, int obsColor, PathBuffer out) {
+        out.clear();
+        if (!isInside(p1) || !isInside(p2)) return false;
+        if (getPixel(p1) == obsColor || getPixel(p2) == obsColor) return false;
+        int src = index(p1.getX(), p1.getY()), dst = index(p2.getX(), p2.getY());
+        if (src == dst) {
+            out.begin(1, getHeight())[0] = src;
+            return true;
+        }
+        if (!blockedCells(obsColor)) return materialize().shortestPath(p1, p2, obsColor, PathEngine.BFS, out);
+        int d = kernel().search(_base.cells(), getWidth(), getHeight(), _cyclicFlag, src, dst, obsColor, null,
+                _blocked, _blockedCount);
+        if (d < 0) return false;
+        _bfs.path(dst, d, getHeight(), out);
+        return true;
+    }
+
+    @Override
+    public Map2D allDistance(Pixel2D start, int obsColor) {
+        if (!isInside(start)) return null;
+        int w = getWidth(), h = getHeight();
+        if (getPixel(start) == obsColor) return new Map(w, h, -1);
+        if (!blockedCells(obsColor)) return materialize().allDistance(start, obsColor);
+        int[] out = new int[w * h];
+        Arrays.fill(out, -1);
+        kernel().search(_base.cells(), w, h, _cyclicFlag, index(start.getX(), start.getY()), -1, obsColor, out,
+                _blocked, _blockedCount);
+        return new Map(w, h, out);
+    }
+
+    /**
+     * Same as Map.nearestOfColor, over the overlay's colors.
+     * When the overlay only adds obstacles the base cells are searched in place, as in shortestPath.
+     */
+    public NearestTargets nearestOfColor(Pixel2D start, int color, int k, int obsColor) {
+        if (k < 1) throw new RuntimeException("Bad k");
+        if (!isInside(start) || getPixel(start) == obsColor) return NearestTargets.of(null, new int[0], 0, getHeight());
+        if (!blockedCells(obsColor) || !onlyBlocks(obsColor)) return materialize().nearestOfColor(start, color, k, obsColor);
+        int w = getWidth(), h = getHeight();
+        int[] found = new int[Math.min(k, w * h)];
+        int count = kernel().nearest(_base.cells(), w, h, _cyclicFlag, index(start.getX(), start.getY()), color, k,
+                obsColor, found, _blocked, _blockedCount);
+        return NearestTargets.of(_bfs, found, count, h);
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+
+    /**
+     * Collects into _blocked the changed cells which are obstacles only in the overlay.
+     * @return false if the overlay opens a base obstacle (the kernel can not express that).
+     */
+    private boolean blockedCells(int obsColor) {
+        int[] cells = _base.cells();
+        _blockedCount = 0;
+        for (int i = 0; i < _size; i++) {
+            int cell = _log[i];
+            boolean obs = _values[slot(cell)] == obsColor, baseObs = cells[cell] == obsColor;
+            if (baseObs && !obs) return false;
+            if (obs && !baseObs) {
+                if (_blockedCount == _blocked.length) _blocked = Arrays.copyOf(_blocked, _blockedCount * 2);
+                _blocked[_blockedCount++] = cell;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if every changed cell is either an obstacle or has its base color (so the base colors can be read).
+     */
+    private boolean onlyBlocks(int obsColor) {
+        int[] cells = _base.cells();
+        for (int i = 0; i < _size; i++) {
+            int cell = _log[i], v = _values[slot(cell)];
+            if (v != obsColor && v != cells[cell]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * A plain copy of this map (base and overlay).
+     */
+    private Map materialize() {
+        Map ans = new Map(_base);
+        int[] cells = ans.cells();
+        for (int i = 0; i < _size; i++) cells[_log[i]] = _values[slot(_log[i])];
+        ans.setCyclic(_cyclicFlag);
+        return ans;
+    }
+
+    private void wrap(Map base) {
+        _base = base;
+        _cyclicFlag = base.isCyclic();
+        int n = base.getWidth() * base.getHeight();
+        _dirty = new long[(n + 63) >>> 6];
+        _keys = new int[16];
+        _values = new int[16];
+        _log = new int[16];
+        _size = 0;
+    }
+
+    private int get(int cell) {
+        if ((_dirty[cell >>> 6] & (1L << cell)) == 0) return _base.cells()[cell];
+        return _values[slot(cell)];
+    }
+
+    private void set(int cell, int v) {
+        if ((_dirty[cell >>> 6] & (1L << cell)) != 0) {
+            _values[slot(cell)] = v;
+            return;
+        }
+        if (2 * (_size + 1) > _keys.length) grow();
+        int s = slot(cell);
+        _keys[s] = cell + 1;
+        _values[s] = v;
+        if (_size == _log.length) _log = Arrays.copyOf(_log, _size * 2);
+        _log[_size++] = cell;
+        _dirty[cell >>> 6] |= 1L << cell;
+    }
+
+    /**
+     * The slot of cell in the hash: its own slot, or the empty slot where it would be inserted.
+     */
+    private int slot(int cell) {
+        int mask = _keys.length - 1, s = cell * 0x9E3779B9;
+        s = (s ^ s >>> 16) & mask;
+        while (_keys[s] != 0 && _keys[s] != cell + 1) s = (s + 1) & mask;
+        return s;
+    }
+
+    private void grow() {
+        int[] keys = _keys, values = _values;
+        _keys = new int[keys.length * 2];
+        _values = new int[keys.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0) continue;
+            int s = slot(keys[i] - 1);
+            _keys[s] = keys[i];
+            _values[s] = values[i];
+        }
+    }
+
+    private int index(int x, int y) {
+        int w = getWidth(), h = getHeight();
+        if ((x | y) < 0 || x >= w || y >= h) {
+            throw new ArrayIndexOutOfBoundsException("(" + x + "," + y + ") is outside " + w + "x" + h);
+        }
+        return x * h + y;
+    }
+
+    private BfsKernel kernel() {
+        if (_bfs == null) _bfs = new BfsKernel();
+        return _bfs;
+    }
+}
@@ -0,0 +1,151 @@
+package assignments.Ex3;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A level-synchronous BFS (distances only) over the flat cells of a Map (the entry [x][y] is at x*h+y),
+ * where every level's frontier is split between the threads of a ForkJoinPool.
+ * A cell is claimed by a compare-and-set of its distance from -1, so every cell is expanded exactly once,
+ * and since all the cells of a level get the same distance the output does not depend on the thread timing.
+ * Small levels are expanded by the calling thread. Not thread safe - every Map owns its own.
+ */
+final class ParallelBfs {
+    /** Maps with fewer cells run the sequential kernel: the task overhead is not worth it. */
+    static final int MIN_CELLS = 1 << 16;
+    /** Levels with fewer frontier cells are expanded by the calling thread. */
+    private static final int MIN_LEVEL = 1 << 11;
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final ForkJoinPool _pool;
+    private int[] _front = new int[0];
+    private int[] _next = new int[0];
+    private Chunk[] _chunks = new Chunk[0];
+    private int _visited;
+
+    ParallelBfs(ForkJoinPool pool) {
+        _pool = pool;
+    }
+
+    /**
+     * Writes the BFS distance from src of every cell reachable from it into dist, which must hold -1 in every cell.
+     * @return the number of reached cells.
+     */
+    int search(int[] cells, int w, int h, boolean cyclic, int src, int obs, int[] dist) {
+        int n = w * h;
+        if (_front.length < n) {
+            _front = new int[n];
+            _next = new int[n];
+        }
+        int chunks = Math.max(1, _pool.getParallelism() * 4);
+        if (_chunks.length != chunks) {
+            _chunks = new Chunk[chunks];
+            for (int i = 0; i < chunks; i++) _chunks[i] = new Chunk();
+        }
+
+        dist[src] = 0;
+        _front[0] = src;
+        int size = 1, reached = 1, d = 0;
+        while (size > 0) {
+            d++;
+            int[] front = _front, next = _next;
+            int nextSize = 0;
+            if (size < MIN_LEVEL) {
+                Chunk c = _chunks[0];
+                c.set(cells, w, h, cyclic, obs, dist, front, 0, size, d);
+                c.compute();
+                System.arraycopy(c._out, 0, next, 0, c._size);
+                nextSize = c._size;
+            } else {
+                int step = (size + chunks - 1) / chunks;
+                for (int i = 0; i < chunks; i++) {
+                    int from = Math.min(size, i * step);
+                    _chunks[i].reinitialize();
+                    _chunks[i].set(cells, w, h, cyclic, obs, dist, front, from, Math.min(size, from + step), d);
+                }
+                _pool.invoke(new Level(_chunks));
+                for (Chunk c : _chunks) { // the join above publishes the chunks' output
+                    System.arraycopy(c._out, 0, next, nextSize, c._size);
+                    nextSize += c._size;
+                }
+            }
+            reached += nextSize;
+            _front = next;
+            _next = front;
+            size = nextSize;
+        }
+        _visited = reached;
+        return reached;
+    }
+
+    /**
+     * @return the number of cells reached by the last search.
+     */
+    int lastVisited() {
+        return _visited;
+    }
+
+    /**
+     * Runs all the chunks of a level.
+     */
+    private static final class Level extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Chunk[] _chunks;
+
+        Level(Chunk[] chunks) {
+            _chunks = chunks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(_chunks);
+        }
+    }
+
+    /**
+     * Expands the frontier cells [from, to) into its own output buffer (kept between levels).
+     */
+    private static final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private int[] _cells, _dist, _front;
+        private int _w, _h, _obs, _from, _to, _d;
+        private boolean _cyclic;
+        private int[] _out = new int[64];
+        private int _size;
+
+        void set(int[] cells, int w, int h, boolean cyclic, int obs, int[] dist, int[] front, int from, int to, int d) {
+            _cells = cells;
+            _w = w;
+            _h = h;
+            _cyclic = cyclic;
+            _obs = obs;
+            _dist = dist;
+            _front = front;
+            _from = from;
+            _to = to;
+            _d = d;
+        }
+
+        @Override
+        protected void compute() {
+            int[] cells = _cells, dist = _dist, front = _front;
+            int w = _w, h = _h, obs = _obs, d = _d, size = 0;
+            int[] out = _out;
+            for (int i = _from; i < _to; i++) {
+                int cur = front[i], x = cur / h, y = cur - x * h;
+                for (int dir = 0; dir < 4; dir++) {
+                    int nb = BfsKernel.step(x, y, dir, w, h, _cyclic);
+                    if (nb < 0 || cells[nb] == obs || dist[nb] != -1) continue; // a plain read filters most claimed cells
+                    if (!CELL.compareAndSet(dist, nb, -1, d)) continue;
+                    if (size == out.length) out = Arrays.copyOf(out, size * 2);
+                    out[size++] = nb;
+                }
+            }
+            _out = out;
+            _size = size;
+        }
+    }
+}
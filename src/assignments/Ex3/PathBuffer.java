@@ -0,0 +1,119 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * A reusable path result: the cells of a path as packed ints (x*h+y, where h is the map height),
+ * with no object per point. The length, the first step and any point can be read without allocating;
+ * toArray() builds the classic Pixel2D[] when one is needed.
+ * A buffer is filled by Map.shortestPath(p1, p2, obsColor, buffer) (and OverlayMap's), and grows to the longest path it held.
+ */
+public final class PathBuffer {
+    private int[] _cells;
+    private int _length;
+    private int _h = 1;
+
+    public PathBuffer() {
+        _cells = new int[16];
+    }
+
+    /**
+     * @return the number of points in the path (start and end included), 0 if it holds no path.
+     */
+    public int length() {
+        return _length;
+    }
+
+    /**
+     * @return true if it holds no path.
+     */
+    public boolean isEmpty() {
+        return _length == 0;
+    }
+
+    /**
+     * @return the number of moves along the path (length()-1), -1 if it holds no path.
+     */
+    public int distance() {
+        return _length - 1;
+    }
+
+    /**
+     * @return the packed i'th point: x*h+y, where h is the height of the map it was computed on.
+     */
+    public int cell(int i) {
+        return _cells[check(i)];
+    }
+
+    public int x(int i) {
+        return _cells[check(i)] / _h;
+    }
+
+    public int y(int i) {
+        return _cells[check(i)] % _h;
+    }
+
+    /**
+     * @return the height of the map the path was computed on (to unpack cell(i)).
+     */
+    public int height() {
+        return _h;
+    }
+
+    /**
+     * @return the i'th point as a new Index2D.
+     */
+    public Pixel2D get(int i) {
+        return new Index2D(x(i), y(i));
+    }
+
+    /**
+     * @return the point after the start (the start itself for a single point path), null if it holds no path.
+     */
+    public Pixel2D firstStep() {
+        if (_length == 0) return null;
+        return get(_length > 1 ? 1 : 0);
+    }
+
+    /**
+     * @return the path as a new array of points (the old shortestPath result), null if it holds no path.
+     */
+    public Pixel2D[] toArray() {
+        if (_length == 0) return null;
+        Pixel2D[] ans = new Pixel2D[_length];
+        for (int i = 0; i < _length; i++) {
+            ans[i] = new Index2D(_cells[i] / _h, _cells[i] % _h);
+        }
+        return ans;
+    }
+
+    /**
+     * Empties the buffer (keeps its storage).
+     */
+    public void clear() {
+        _length = 0;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Starts a new path of length points on a map of height h.
+     * @return the storage to write the packed points to (at least length long).
+     */
+    int[] begin(int length, int h) {
+        if (_cells.length < length) _cells = new int[Math.max(length, 2 * _cells.length)];
+        _length = length;
+        _h = h;
+        return _cells;
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= _length) {
+            throw new IndexOutOfBoundsException("Point " + i + " of a path of length " + _length);
+        }
+        return i;
+    }
+}
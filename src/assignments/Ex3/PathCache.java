@@ -0,0 +1,161 @@
+package assignments.Ex3;
+
+import java.util.LinkedHashMap;
+
+/**
+ * A bounded LRU cache of a Map's shortestPath and allDistance results, keyed on the packed endpoints
+ * (source and target cells) and the obstacle color.
+ * The results are only valid for the map version they were computed on: the first lookup after the map changed
+ * (setPixel, fill, init with a different board, setCyclic...) drops every entry at once.
+ * Paths are kept as packed cells and distance maps as private copies, so callers can not change a cached result.
+ * See Map.setPathCacheSize.
+ */
+public final class PathCache {
+    private final int _capacity;
+    private final LinkedHashMap<Key, Object> _entries;
+    private long _version;
+    private long _hits, _misses, _evictions, _invalidations;
+
+    PathCache(int capacity, long version) {
+        _capacity = capacity;
+        _version = version;
+        _entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) { // access order: the eldest is the least recently used
+            @Override
+            protected boolean removeEldestEntry(java.util.Map.Entry<Key, Object> eldest) {
+                if (size() <= _capacity) return false;
+                _evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return the maximal number of entries.
+     */
+    public int capacity() {
+        return _capacity;
+    }
+
+    /**
+     * @return the number of entries now.
+     */
+    public int size() {
+        return _entries.size();
+    }
+
+    public long hits() {
+        return _hits;
+    }
+
+    public long misses() {
+        return _misses;
+    }
+
+    /**
+     * @return the number of entries dropped to make room for new ones.
+     */
+    public long evictions() {
+        return _evictions;
+    }
+
+    /**
+     * @return the number of times the whole cache was dropped since the map changed.
+     */
+    public long invalidations() {
+        return _invalidations;
+    }
+
+    /**
+     * Drops all the entries (the counters are kept).
+     */
+    public void clear() {
+        _entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "PathCache[" + size() + "/" + _capacity + ", hits=" + _hits + ", misses=" + _misses
+                + ", evictions=" + _evictions + ", invalidations=" + _invalidations + "]";
+    }
+
+    /**
+     * Looks the path src->dst up, and writes it to out on a hit (out is cleared for a cached "no path").
+     * @return true on a hit.
+     */
+    boolean path(long version, int src, int dst, int obs, int h, PathBuffer out) {
+        int[] path = (int[]) lookup(version, src, dst, obs);
+        if (path == null) return false;
+        out.clear();
+        if (path.length > 0) System.arraycopy(path, 0, out.begin(path.length, h), 0, path.length);
+        return true;
+    }
+
+    /**
+     * Stores the path in out (or "no path" if out is empty) as the result of src->dst.
+     */
+    void putPath(long version, int src, int dst, int obs, PathBuffer out) {
+        int[] path = new int[out.length()];
+        for (int i = 0; i < path.length; i++) path[i] = out.cell(i);
+        store(version, src, dst, obs, path);
+    }
+
+    /**
+     * @return the cached distances from src (not to be changed), null on a miss.
+     */
+    Map distances(long version, int src, int obs) {
+        return (Map) lookup(version, src, -1, obs);
+    }
+
+    /**
+     * Stores dist (not copied, it must not be changed afterwards) as the distances from src.
+     */
+    void putDistances(long version, int src, int obs, Map dist) {
+        store(version, src, -1, obs, dist);
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    /**
+     * dst is the target cell of a path, -1 for a distance map.
+     */
+    private Object lookup(long version, int src, int dst, int obs) {
+        validate(version);
+        Object ans = _entries.get(new Key(src, dst, obs));
+        if (ans == null) _misses++;
+        else _hits++;
+        return ans;
+    }
+
+    private void store(long version, int src, int dst, int obs, Object value) {
+        validate(version);
+        _entries.put(new Key(src, dst, obs), value);
+    }
+
+    private void validate(long version) {
+        if (version == _version) return;
+        if (!_entries.isEmpty()) _invalidations++;
+        _entries.clear();
+        _version = version;
+    }
+
+    private static final class Key {
+        private final long _cells; // src in the high half, dst in the low half
+        private final int _obs;
+
+        Key(int src, int dst, int obs) {
+            _cells = ((long) src << 32) | (dst & 0xFFFFFFFFL);
+            _obs = obs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return _cells == other._cells && _obs == other._obs;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(_cells * 0x9E3779B97F4A7C15L) * 31 + _obs;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package assignments.Ex3;
+
+/**
+ * The search algorithms Map.shortestPath can run.
+ * All of them return a shortest path (same length), but when there are several
+ * shortest paths they may return different ones.
+ */
+public enum PathEngine {
+    /** A single frontier BFS from the start point (the default). */
+    BFS,
+    /** Two BFS frontiers, one from each end, which stop once they meet. */
+    BIDIRECTIONAL,
+    /** A* with a Manhattan heuristic (wrap around distance on a cyclic map). */
+    ASTAR
+}
@@ -0,0 +1,104 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * Span (scanline) flood fill over the flat cells of a Map (the entry [x][y] is at x*h+y).
+ * Every seed is grown into a whole run of the old color along y (which is contiguous in memory),
+ * the run is filled at once, and the neighboring columns (x-1, x+1) are scanned over the run's range
+ * for new seeds - one seed per run of the old color.
+ * Every filled run also stamps the Map's dirty tiles it covers (see Map.TILE), and moves its cells in the Map's
+ * color index (if it has one).
+ * The seed stack (packed indices) is kept between fills. Not thread safe - every Map owns its own.
+ */
+final class ScanlineFill {
+    private int[] _stack = new int[64];
+    private int _size;
+
+    /**
+     * Fills the connected component of start (whose color is old) with new_v,
+     * and sets the entries of tiles (the dirty tiles of a w*h map, see Map) the filled cells are in to stamp.
+     * @param index the color index of the cells, null if there is none.
+     * @return the number of filled cells.
+     */
+    int fill(int[] cells, int w, int h, boolean cyclic, int start, int old, int new_v, long[] tiles, long stamp,
+             ColorIndex index) {
+        _size = 0;
+        push(start);
+        int count = 0;
+        while (_size > 0) {
+            int seed = _stack[--_size];
+            if (cells[seed] != old) continue;
+            int x = seed / h, base = x * h;
+            int y0 = seed - base, len = 1;
+
+            // grow the run to both sides, on a cyclic map it may wrap around (up to the whole column).
+            if (cyclic) {
+                while (len < h && cells[base + (y0 == 0 ? h - 1 : y0 - 1)] == old) {
+                    y0 = y0 == 0 ? h - 1 : y0 - 1;
+                    len++;
+                }
+                int y1 = (y0 + len - 1) % h;
+                while (len < h && cells[base + (y1 == h - 1 ? 0 : y1 + 1)] == old) {
+                    y1 = y1 == h - 1 ? 0 : y1 + 1;
+                    len++;
+                }
+            } else {
+                while (y0 > 0 && cells[base + y0 - 1] == old) {
+                    y0--;
+                    len++;
+                }
+                while (y0 + len < h && cells[base + y0 + len] == old) len++;
+            }
+
+            fillRun(cells, base, y0, len, h, new_v);
+            stampRun(tiles, x, y0, len, h, stamp);
+            if (index != null) index.setRun(base, y0, len, h, old, new_v);
+            count += len;
+
+            if (x > 0) seeds(cells, (x - 1) * h, y0, len, h, old);
+            else if (cyclic) seeds(cells, (w - 1) * h, y0, len, h, old);
+            if (x + 1 < w) seeds(cells, (x + 1) * h, y0, len, h, old);
+            else if (cyclic) seeds(cells, 0, y0, len, h, old);
+        }
+        return count;
+    }
+
+    /**
+     * Sets the len cells from [y0] (wrapping around h) of the column at base.
+     */
+    private static void fillRun(int[] cells, int base, int y0, int len, int h, int v) {
+        int first = Math.min(len, h - y0);
+        Arrays.fill(cells, base + y0, base + y0 + first, v);
+        if (first < len) Arrays.fill(cells, base, base + len - first, v);
+    }
+
+    /**
+     * Stamps the tiles of the len cells from [x][y0] (wrapping around h).
+     */
+    private static void stampRun(long[] tiles, int x, int y0, int len, int h, long stamp) {
+        int tileRow = (x >> Map.TILE_SHIFT) * ((h + Map.TILE - 1) >> Map.TILE_SHIFT);
+        int first = Math.min(len, h - y0);
+        for (int t = y0 >> Map.TILE_SHIFT; t <= (y0 + first - 1) >> Map.TILE_SHIFT; t++) tiles[tileRow + t] = stamp;
+        for (int t = 0; first < len && t <= (len - first - 1) >> Map.TILE_SHIFT; t++) tiles[tileRow + t] = stamp;
+    }
+
+    /**
+     * Pushes one seed for every run of old in the len cells from [y0] (wrapping around h) of the column at base.
+     */
+    private void seeds(int[] cells, int base, int y0, int len, int h, int old) {
+        boolean inRun = false;
+        int y = y0;
+        for (int k = 0; k < len; k++) {
+            boolean match = cells[base + y] == old;
+            if (match && !inRun) push(base + y);
+            inRun = match;
+            if (++y == h) y = 0;
+        }
+    }
+
+    private void push(int i) {
+        if (_size == _stack.length) _stack = Arrays.copyOf(_stack, _size * 2);
+        _stack[_size++] = i;
+    }
+}
@@ -0,0 +1,431 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * A sparse Map2D for very large, mostly uniform worlds: the grid is split into 64x64 tiles,
+ * and a tile which was never written to (or was only written with the init value) is not allocated -
+ * all of its cells hold the init value. The tiles are grouped into blocks of 64x64 tiles (4096x4096 cells),
+ * which are allocated on their first write too, so the memory is about 16KB per written tile plus 16KB
+ * per written block, instead of 4 bytes per cell.
+ * Copies share their blocks and tiles, which are copied on their first write (copy-on-write): every block and tile
+ * counts its owners, so a write copies it only while it is still shared - the last owner writes it in place.
+ * (A map which is dropped without an init keeps its counts: its copies then still copy once.)
+ * The algorithms (fill, shortestPath, allDistance) work over packed (x,y) coordinates, so w*h may exceed
+ * the int range, and allDistance returns a TiledMap which allocates only the reached tiles.
+ */
+public class TiledMap implements Map2D {
+    /** log2 of the tile side (in cells) and of the block side (in tiles). */
+    static final int BITS = 6;
+    static final int SIDE = 1 << BITS, MASK = SIDE - 1;
+    private static final int BLOCK_BITS = 2 * BITS;
+    /** A tile is SIDE*SIDE cells and one more entry: the number of blocks which hold it. */
+    private static final int REFS = SIDE * SIDE;
+
+    private int _w, _h, _bh, _init;
+    private boolean _cyclicFlag = true;
+    private Block[] _blocks;      // [bx*_bh+by], null if untouched
+    private int _allocated;
+
+    /**
+     * Constructs a w*h map with an init value v (no tile is allocated).
+     */
+    public TiledMap(int w, int h, int v) {
+        init(w, h, v);
+    }
+
+    /**
+     * Constructs a map from a given 2D array.
+     */
+    public TiledMap(int[][] data) {
+        init(data);
+    }
+
+    /**
+     * Copy constructor: the copy shares the tiles of other, a shared tile is copied by whichever map writes it first.
+     */
+    public TiledMap(TiledMap other) {
+        _w = other._w;
+        _h = other._h;
+        _bh = other._bh;
+        _init = other._init;
+        _cyclicFlag = other._cyclicFlag;
+        _blocks = other._blocks.clone();
+        for (Block block : _blocks) {
+            if (block != null) block._refs++;
+        }
+        _allocated = other._allocated;
+    }
+
+    @Override
+    public void init(int w, int h, int v) {
+        if (w <= 0 || h <= 0) {
+            throw new RuntimeException("Bad dimensions");
+        }
+        int bw = (int) ((w + (1L << BLOCK_BITS) - 1) >>> BLOCK_BITS);
+        _bh = (int) ((h + (1L << BLOCK_BITS) - 1) >>> BLOCK_BITS);
+        if ((long) bw * _bh > Integer.MAX_VALUE - 8) {
+            throw new RuntimeException("Bad dimensions");
+        }
+        _w = w;
+        _h = h;
+        _init = v;
+        if (_blocks != null) {
+            for (Block block : _blocks) {
+                if (block != null) block._refs--; // a copy of this map may own it alone now
+            }
+        }
+        _blocks = new Block[bw * _bh];
+        _allocated = 0;
+    }
+
+    @Override
+    public void init(int[][] arr) {
+        if (arr == null || arr.length == 0 || arr[0] == null || arr[0].length == 0) {
+            throw new RuntimeException("Bad array");
+        }
+        int w = arr.length, h = arr[0].length;
+        for (int i = 0; i < w; i++) {
+            if (arr[i] == null || arr[i].length != h) {
+                throw new RuntimeException("Ragged array");
+            }
+        }
+        init(w, h, arr[0][0]);
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) setPixel(x, y, arr[x][y]);
+        }
+    }
+
+    @Override
+    public int[][] getMap() {
+        int[][] ans = new int[_w][_h];
+        for (int x = 0; x < _w; x++) {
+            for (int y = 0; y < _h; y++) ans[x][y] = get(x, y);
+        }
+        return ans;
+    }
+
+    @Override
+    public int getWidth() {
+        return _w;
+    }
+
+    @Override
+    public int getHeight() {
+        return _h;
+    }
+
+    @Override
+    public int getPixel(int x, int y) {
+        check(x, y);
+        return get(x, y);
+    }
+
+    @Override
+    public int getPixel(Pixel2D p) {
+        return getPixel(p.getX(), p.getY());
+    }
+
+    @Override
+    public void setPixel(int x, int y, int v) {
+        check(x, y);
+        set(x, y, v);
+    }
+
+    @Override
+    public void setPixel(Pixel2D p, int v) {
+        setPixel(p.getX(), p.getY(), v);
+    }
+
+    @Override
+    public boolean isInside(Pixel2D p) {
+        if (p == null) return false;
+        int x = p.getX(), y = p.getY();
+        return x >= 0 && x < _w && y >= 0 && y < _h;
+    }
+
+    @Override
+    public boolean isCyclic() {
+        return _cyclicFlag;
+    }
+
+    @Override
+    public void setCyclic(boolean cy) {
+        _cyclicFlag = cy;
+    }
+
+    /**
+     * @return the number of allocated tiles (each holds 64*64 cells).
+     */
+    public int allocatedTiles() {
+        return _allocated;
+    }
+
+    /**
+     * Fills the component of p with new_v: a span fill along y (see ScanlineFill), over packed coordinates.
+     */
+    @Override
+    public int fill(Pixel2D p, int new_v) {
+        if (!isInside(p)) return 0;
+        int old = get(p.getX(), p.getY());
+        if (old == new_v) return 0;
+        LongStack stack = new LongStack();
+        stack.push(pack(p.getX(), p.getY()));
+        int count = 0;
+        while (stack.size() > 0) {
+            long seed = stack.pop();
+            int x = (int) (seed >>> 32), y0 = (int) seed, len = 1;
+            if (get(x, y0) != old) continue;
+            // grow the run to both sides, on a cyclic map it may wrap around (up to the whole column).
+            while (len < _h && (_cyclicFlag || y0 > 0) && get(x, prevY(y0)) == old) {
+                y0 = prevY(y0);
+                len++;
+            }
+            int y1 = (int) ((y0 + (long) len - 1) % _h);
+            while (len < _h && (_cyclicFlag || y1 < _h - 1) && get(x, nextY(y1)) == old) {
+                y1 = nextY(y1);
+                len++;
+            }
+            for (int k = 0, y = y0; k < len; k++, y = nextY(y)) set(x, y, new_v);
+            count += len;
+
+            if (x > 0 || _cyclicFlag) seeds(stack, x > 0 ? x - 1 : _w - 1, y0, len, old);
+            if (x < _w - 1 || _cyclicFlag) seeds(stack, x < _w - 1 ? x + 1 : 0, y0, len, old);
+        }
+        return count;
+    }
+
+    @Override
+    public Pixel2D[] shortestPath(Pixel2D p1, Pixel2D p2, int obsColor) {
+        if (!isInside(p1) || !isInside(p2)) return null;
+        if (getPixel(p1) == obsColor || getPixel(p2) == obsColor) return null;
+        if (p1.equals(p2)) {
+            return new Pixel2D[]{new Index2D(p1)};
+        }
+        TiledMap dist = new TiledMap(_w, _h, -1);
+        dist._cyclicFlag = _cyclicFlag;
+        int d = bfs(p1, obsColor, dist, pack(p2.getX(), p2.getY()));
+        if (d < 0) return null;
+
+        // walk back from p2 along decreasing distances.
+        Pixel2D[] ans = new Pixel2D[d + 1];
+        int x = p2.getX(), y = p2.getY();
+        ans[d] = new Index2D(x, y);
+        for (int k = d - 1; k >= 0; k--) {
+            for (int dir = 0; dir < 4; dir++) {
+                long nb = neighbor(x, y, dir);
+                if (nb >= 0 && dist.get((int) (nb >>> 32), (int) nb) == k) {
+                    x = (int) (nb >>> 32);
+                    y = (int) nb;
+                    break;
+                }
+            }
+            ans[k] = new Index2D(x, y);
+        }
+        return ans;
+    }
+
+    /**
+     * @return the distances from start as a TiledMap (only the reached tiles are allocated).
+     */
+    @Override
+    public Map2D allDistance(Pixel2D start, int obsColor) {
+        if (!isInside(start)) return null;
+        TiledMap ans = new TiledMap(_w, _h, -1);
+        ans._cyclicFlag = _cyclicFlag;
+        if (getPixel(start) == obsColor) return ans;
+        bfs(start, obsColor, ans, -1);
+        return ans;
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    /**
+     * BFS from start, writing the distances into dist (which must be all -1).
+     * @param target a packed coordinate to stop at, or -1.
+     * @return the distance of target, -1 if it was not reached (or target==-1).
+     */
+    private int bfs(Pixel2D start, int obsColor, TiledMap dist, long target) {
+        LongQueue queue = new LongQueue();
+        long s = pack(start.getX(), start.getY());
+        dist.set(start.getX(), start.getY(), 0);
+        queue.add(s);
+        while (queue.size() > 0) {
+            long cur = queue.poll();
+            int x = (int) (cur >>> 32), y = (int) cur;
+            int d = dist.get(x, y);
+            if (cur == target) return d;
+            for (int dir = 0; dir < 4; dir++) {
+                long nb = neighbor(x, y, dir);
+                if (nb < 0) continue;
+                int nx = (int) (nb >>> 32), ny = (int) nb;
+                if (dist.get(nx, ny) != -1 || get(nx, ny) == obsColor) continue;
+                dist.set(nx, ny, d + 1);
+                queue.add(nb);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The packed neighbor of [x][y] in direction dir (BfsKernel's order), -1 if there is none.
+     */
+    private long neighbor(int x, int y, int dir) {
+        switch (dir) {
+            case BfsKernel.RIGHT:
+                if (x + 1 < _w) return pack(x + 1, y);
+                return _cyclicFlag ? pack(0, y) : -1;
+            case BfsKernel.LEFT:
+                if (x > 0) return pack(x - 1, y);
+                return _cyclicFlag ? pack(_w - 1, y) : -1;
+            case BfsKernel.DOWN:
+                if (y + 1 < _h) return pack(x, y + 1);
+                return _cyclicFlag ? pack(x, 0) : -1;
+            default:
+                if (y > 0) return pack(x, y - 1);
+                return _cyclicFlag ? pack(x, _h - 1) : -1;
+        }
+    }
+
+    /**
+     * Pushes one seed for every run of old in the len cells of column x from y0 (wrapping around).
+     */
+    private void seeds(LongStack stack, int x, int y0, int len, int old) {
+        boolean inRun = false;
+        for (int k = 0, y = y0; k < len; k++, y = nextY(y)) {
+            boolean match = get(x, y) == old;
+            if (match && !inRun) stack.push(pack(x, y));
+            inRun = match;
+        }
+    }
+
+    private int nextY(int y) {
+        return y == _h - 1 ? 0 : y + 1;
+    }
+
+    private int prevY(int y) {
+        return y == 0 ? _h - 1 : y - 1;
+    }
+
+    private int get(int x, int y) {
+        Block block = _blocks[(x >>> BLOCK_BITS) * _bh + (y >>> BLOCK_BITS)];
+        if (block == null) return _init;
+        int[] tile = block._tiles[tileIndex(x, y)];
+        return tile == null ? _init : tile[((x & MASK) << BITS) | (y & MASK)];
+    }
+
+    private void set(int x, int y, int v) {
+        int b = (x >>> BLOCK_BITS) * _bh + (y >>> BLOCK_BITS);
+        Block block = _blocks[b];
+        if (block == null) {
+            if (v == _init) return;
+            block = _blocks[b] = new Block();
+        } else if (block._refs > 1) {
+            block._refs--;
+            block = _blocks[b] = block.copy();
+        }
+        int t = tileIndex(x, y);
+        int[] tile = block._tiles[t];
+        if (tile == null) {
+            if (v == _init) return;
+            tile = block._tiles[t] = new int[REFS + 1];
+            if (_init != 0) Arrays.fill(tile, 0, REFS, _init);
+            tile[REFS] = 1;
+            _allocated++;
+        } else if (tile[REFS] > 1) {
+            tile[REFS]--;
+            tile = block._tiles[t] = tile.clone();
+            tile[REFS] = 1;
+        }
+        tile[((x & MASK) << BITS) | (y & MASK)] = v;
+    }
+
+    /**
+     * The index of the tile of [x][y] in its block.
+     */
+    private static int tileIndex(int x, int y) {
+        return (((x >>> BITS) & MASK) << BITS) | ((y >>> BITS) & MASK);
+    }
+
+    private void check(int x, int y) {
+        if ((x | y) < 0 || x >= _w || y >= _h) {
+            throw new ArrayIndexOutOfBoundsException("(" + x + "," + y + ") is outside " + _w + "x" + _h);
+        }
+    }
+
+    private static long pack(int x, int y) {
+        return ((long) x << 32) | y;
+    }
+
+    /**
+     * 64x64 tiles, null tiles hold only the init value.
+     */
+    private static final class Block {
+        private final int[][] _tiles = new int[SIDE * SIDE][];
+        private int _refs = 1; // the number of maps which hold this block
+
+        /**
+         * A copy of this block (for one map) which shares its tiles: a tile is copied on a write while it is shared.
+         */
+        Block copy() {
+            Block ans = new Block();
+            for (int t = 0; t < _tiles.length; t++) {
+                if (_tiles[t] == null) continue;
+                ans._tiles[t] = _tiles[t];
+                _tiles[t][REFS]++;
+            }
+            return ans;
+        }
+    }
+
+    /**
+     * A growable stack of packed coordinates.
+     */
+    private static final class LongStack {
+        private long[] _items = new long[64];
+        private int _size;
+
+        void push(long v) {
+            if (_size == _items.length) _items = Arrays.copyOf(_items, _size * 2);
+            _items[_size++] = v;
+        }
+
+        long pop() {
+            return _items[--_size];
+        }
+
+        int size() {
+            return _size;
+        }
+    }
+
+    /**
+     * A growable FIFO ring of packed coordinates: its size follows the frontier, not the map.
+     */
+    private static final class LongQueue {
+        private long[] _items = new long[64];
+        private int _head, _size;
+
+        void add(long v) {
+            if (_size == _items.length) {
+                long[] grown = new long[_size * 2];
+                int first = _items.length - _head;
+                System.arraycopy(_items, _head, grown, 0, Math.min(first, _size));
+                if (first < _size) System.arraycopy(_items, 0, grown, first, _size - first);
+                _items = grown;
+                _head = 0;
+            }
+            _items[(_head + _size++) & (_items.length - 1)] = v;
+        }
+
+        long poll() {
+            long v = _items[_head];
+            _head = (_head + 1) & (_items.length - 1);
+            _size--;
+            return v;
+        }
+
+        int size() {
+            return _size;
+        }
+    }
+}
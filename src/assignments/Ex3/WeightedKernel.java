@@ -0,0 +1,215 @@
+package assignments.Ex3;
+
+import java.util.Arrays;
+
+/**
+ * Least cost searches over the flat cells of a Map (the entry [x][y] is at x*h+y), with the cell costs of a CellCosts.
+ * Costs are small integers, so no binary heap is needed:
+ * when every cost is 0 or 1 a 0-1 BFS runs (a deque: 0 cost moves to the front, 1 cost moves to the back),
+ * otherwise Dijkstra over a Dial bucket queue - C+1 circular buckets for a largest cost C, where the bucket of
+ * distance d is d%(C+1); the current distance only moves forward, so every push and pop is O(1).
+ * Stale entries (of a cell which got a lower distance since) are skipped when popped.
+ * The scratch buffers are kept between searches. Not thread safe - every Map owns its own.
+ */
+final class WeightedKernel {
+    private int[] _cost = new int[0];
+    private int[] _dist = new int[0];
+    private int[] _parent = new int[0];
+    private int[] _seen = new int[0];    // == _stamp: _dist and _parent hold this search's values
+    private int[] _settled = new int[0]; // == _stamp: the distance is final
+    private int _stamp;
+    private int _visited;
+
+    // the 0-1 BFS deque (a ring, its size a power of 2)
+    private int[] _deque = new int[16];
+    // the Dial buckets: linked lists of entries, the entries pool is recycled through a free list
+    private int[] _heads = new int[0];
+    private int[] _entryCell = new int[16], _entryNext = new int[16];
+    private int _free = -1, _entryCount;
+
+    /**
+     * Least cost search from src (which is free, whatever its cost - unless it is blocked: then nothing is reached).
+     * Stops when target is settled, or (if targetColors is not null) when the first cell other than src whose
+     * color is one of targetColors is settled - the least cost one of them.
+     * @param out if not null, gets the cost of every settled cell (unsettled cells are not written).
+     * @return the settled target cell, -1 if there is none (or no target was given).
+     * @throws RuntimeException if a path cost could overflow an int (see CellCosts.MAX_COST).
+     */
+    int search(int[] cells, int w, int h, boolean cyclic, int src, CellCosts costs, int target, int[] targetColors,
+               int[] out) {
+        int n = w * h;
+        ensureCapacity(n);
+        int maxCost = costs.resolve(cells, w, h, _cost);
+        if ((long) maxCost * (n - 1) > Integer.MAX_VALUE) {
+            throw new RuntimeException("Costs too large for a " + w + "x" + h + " map");
+        }
+        _visited = 0;
+        if (_cost[src] < 0) return -1;
+        int stamp = nextStamp();
+        _dist[src] = 0;
+        _parent[src] = -1;
+        _seen[src] = stamp;
+        return maxCost <= 1
+                ? zeroOne(cells, w, h, cyclic, src, target, targetColors, out, stamp)
+                : dial(cells, w, h, cyclic, src, target, targetColors, out, stamp, maxCost);
+    }
+
+    /**
+     * @return the least cost of cell in the last search (valid for settled cells).
+     */
+    int distance(int cell) {
+        return _dist[cell];
+    }
+
+    /**
+     * Writes to out the least cost path from the last search source to target (which must have been settled).
+     */
+    void path(int target, int h, PathBuffer out) {
+        int length = 0;
+        for (int cur = target; cur >= 0; cur = _parent[cur]) length++;
+        int[] ans = out.begin(length, h);
+        int cur = target;
+        for (int i = length - 1; i >= 0; i--) {
+            ans[i] = cur;
+            cur = _parent[cur];
+        }
+    }
+
+    /**
+     * @return the number of cells settled by the last search.
+     */
+    int lastVisited() {
+        return _visited;
+    }
+
+    ////////////////////// Private Methods ///////////////////////
+    private int zeroOne(int[] cells, int w, int h, boolean cyclic, int src, int target, int[] targetColors,
+                        int[] out, int stamp) {
+        int[] cost = _cost, dist = _dist, parent = _parent, seen = _seen, settled = _settled;
+        int mask = _deque.length - 1, head = 0, tail = 0;
+        _deque[tail++] = src;
+        while (head != tail) {
+            int cur = _deque[head];
+            head = (head + 1) & mask;
+            if (settled[cur] == stamp) continue;
+            settled[cur] = stamp;
+            _visited++;
+            if (out != null) out[cur] = dist[cur];
+            if (cur == target || (cur != src && isTarget(cells[cur], targetColors))) return cur;
+
+            int x = cur / h, y = cur - x * h;
+            for (int dir = 0; dir < 4; dir++) {
+                int nb = BfsKernel.step(x, y, dir, w, h, cyclic);
+                if (nb < 0 || cost[nb] < 0 || settled[nb] == stamp) continue;
+                int d = dist[cur] + cost[nb];
+                if (seen[nb] == stamp && d >= dist[nb]) continue;
+                seen[nb] = stamp;
+                dist[nb] = d;
+                parent[nb] = cur;
+                if (((tail + 1) & mask) == head) { // full: double the ring, unrolled from head
+                    int count = mask;
+                    int[] grown = new int[(mask + 1) * 2];
+                    for (int i = 0; i < count; i++) grown[i] = _deque[(head + i) & mask];
+                    _deque = grown;
+                    head = 0;
+                    tail = count;
+                    mask = grown.length - 1;
+                }
+                if (cost[nb] == 0) {
+                    head = (head - 1) & mask;
+                    _deque[head] = nb;
+                } else {
+                    _deque[tail] = nb;
+                    tail = (tail + 1) & mask;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private int dial(int[] cells, int w, int h, boolean cyclic, int src, int target, int[] targetColors,
+                     int[] out, int stamp, int maxCost) {
+        int buckets = maxCost + 1;
+        if (_heads.length < buckets) _heads = new int[buckets];
+        Arrays.fill(_heads, 0, buckets, -1);
+        _free = -1;
+        _entryCount = 0;
+        int[] cost = _cost, dist = _dist, parent = _parent, seen = _seen, settled = _settled;
+        push(src, 0);
+        int pending = 1;
+        for (int d = 0; pending > 0; d++) {
+            int b = d % buckets;
+            while (_heads[b] >= 0) {
+                int e = _heads[b];
+                int cur = _entryCell[e];
+                _heads[b] = _entryNext[e];
+                _entryNext[e] = _free; // recycled
+                _free = e;
+                pending--;
+                if (settled[cur] == stamp || dist[cur] != d) continue; // stale
+                settled[cur] = stamp;
+                _visited++;
+                if (out != null) out[cur] = d;
+                if (cur == target || (cur != src && isTarget(cells[cur], targetColors))) return cur;
+
+                int x = cur / h, y = cur - x * h;
+                for (int dir = 0; dir < 4; dir++) {
+                    int nb = BfsKernel.step(x, y, dir, w, h, cyclic);
+                    if (nb < 0 || cost[nb] < 0 || settled[nb] == stamp) continue;
+                    int nd = d + cost[nb];
+                    if (seen[nb] == stamp && nd >= dist[nb]) continue;
+                    seen[nb] = stamp;
+                    dist[nb] = nd;
+                    parent[nb] = cur;
+                    push(nb, nd % buckets);
+                    pending++;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void push(int cell, int bucket) {
+        int e = _free;
+        if (e >= 0) {
+            _free = _entryNext[e];
+        } else {
+            if (_entryCount == _entryCell.length) {
+                _entryCell = Arrays.copyOf(_entryCell, _entryCount * 2);
+                _entryNext = Arrays.copyOf(_entryNext, _entryCount * 2);
+            }
+            e = _entryCount++;
+        }
+        _entryCell[e] = cell;
+        _entryNext[e] = _heads[bucket];
+        _heads[bucket] = e;
+    }
+
+    private static boolean isTarget(int color, int[] targetColors) {
+        if (targetColors == null) return false;
+        for (int c : targetColors) {
+            if (c == color) return true;
+        }
+        return false;
+    }
+
+    private void ensureCapacity(int n) {
+        if (_cost.length < n) {
+            _cost = new int[n];
+            _dist = new int[n];
+            _parent = new int[n];
+            _seen = new int[n];
+            _settled = new int[n];
+            _stamp = 0;
+        }
+    }
+
+    private int nextStamp() {
+        if (++_stamp == 0) { // wrapped around: old stamps could look current
+            Arrays.fill(_seen, 0);
+            Arrays.fill(_settled, 0);
+            _stamp = 1;
+        }
+        return _stamp;
+    }
+}
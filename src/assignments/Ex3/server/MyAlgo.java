@@ -1,26 +1,38 @@
 package assignments.Ex3.server;
 
+import assignments.Ex3.CellCosts;
+import assignments.Ex3.Index2D;
+import assignments.Ex3.Map;
+import assignments.Ex3.NearestSource;
+import assignments.Ex3.PathBuffer;
+import assignments.Ex3.Pixel2D;
 import exe.ex3.game.Game;
 import exe.ex3.game.GhostCL;
 import exe.ex3.game.PacManAlgo;
 import exe.ex3.game.PacmanGame;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
 /**
  * MyAlgo - Stable Version (fixed).
  *
  * Fixes / Improvements:
  * 1) No crashes: bounds checks for ghost positions before marking visited.
  * 2) Robust parsePosArray: supports "x,y", "x,y,z", "(x,y,z)", with spaces.
- * 3) Safer BFS: can block a radius around ghosts in safeMode (not only exact cell).
+ * 3) Safer food search: a radius around the ghosts is avoided (not only the exact cell), and crossed as little as possible
+ *    when there is no other way.
  * 4) Anti-jitter: avoids quick flip-flops (simple cooldown + avoid opposite when possible).
+ * 5) Danger is measured in maze distance, computed for all ghosts with a single multi-source BFS per move.
  */
 public class MyAlgo implements PacManAlgo {
 
+    // keep your original assumption: 2 or 3 are food
+    private static final int[] FOOD = {2, 3};
+
     private int lastDir = Game.UP;
     private int jitterCooldown = 0; // small cooldown after changing direction
+    private Map map; // reused between moves
+    private final CellCosts costs = foodCosts(1); // walls are blocked, the cells around the ghosts are set every move
+    private final CellCosts risk = foodCosts(1); // the same, where the cells around the ghosts are expensive instead
+    private final PathBuffer path = new PathBuffer();
 
     @Override
     public String getInfo() {
@@ -35,16 +47,15 @@ public class MyAlgo implements PacManAlgo {
         int myY = clamp(p[1], 0, board[0].length - 1);
 
         GhostCL[] ghosts = game.getGhosts(0);
+        NearestSource danger = ghostDistances(board, ghosts);
 
         int nextDir;
 
         // If close to ghosts => run away
-        if (isInDanger(myX, myY, ghosts, 15)) {
-            nextDir = runAway(board, myX, myY, ghosts);
+        if (isInDanger(myX, myY, danger, 15)) {
+            nextDir = runAway(board, myX, myY, danger);
         } else {
-            // Try safe BFS first (blocks around ghosts), then fallback BFS
-            nextDir = findNearestFoodBFS(board, myX, myY, ghosts, true);
-            if (nextDir == -1) nextDir = findNearestFoodBFS(board, myX, myY, ghosts, false);
+            nextDir = findNearestFood(board, myX, myY, ghosts);
         }
 
         // Fallback if nothing found
@@ -58,93 +69,87 @@ public class MyAlgo implements PacManAlgo {
     }
 
     // ----------------------------
-    // BFS for nearest food
+    // Weighted search for nearest food
     // ----------------------------
-    private int findNearestFoodBFS(int[][] board, int startX, int startY, GhostCL[] ghosts, boolean safeMode) {
-        int w = board.length;
-        int h = board[0].length;
-
-        boolean[][] visited = new boolean[w][h];
-
-        // If safeMode: block radius around each ghost (safer than blocking only the exact cell)
-        if (safeMode) {
-            int blockRadius = 2; // you can tune: 1..4
-            for (GhostCL g : ghosts) {
-                int[] gp = parsePosArray(g.getPos(0));
-                int gx = gp[0], gy = gp[1];
-
-                // Mark a small square radius around the ghost as visited (blocked)
-                for (int dx = -blockRadius; dx <= blockRadius; dx++) {
-                    for (int dy = -blockRadius; dy <= blockRadius; dy++) {
-                        int bx = gx + dx;
-                        int by = gy + dy;
-                        if (inBounds(board, bx, by)) {
-                            visited[bx][by] = true;
-                        }
+    /**
+     * The first move towards the nearest food which can be reached without entering the cells near a ghost
+     * (the old "safe" BFS), or else towards the food with the fewest cells near the ghosts on the way
+     * (instead of the old fallback BFS which ignored the ghosts).
+     * The first search blocks the cells near the ghosts, only if it finds nothing a second one prices them at
+     * zoneCost (every other cell costs 1): fewer such cells first, then the shorter path - exactly so while the board
+     * has at most CellCosts.MAX_COST cells (a zone cell then costs more than any path), on larger boards a zone cell
+     * weighs as MAX_COST steps. Our own cell is never blocked, even inside a zone (behind a wall from the ghost).
+     */
+    private int findNearestFood(int[][] board, int startX, int startY, GhostCL[] ghosts) {
+        int blockRadius = 2; // you can tune: 1..4
+        int cells = board.length * board[0].length;
+        int zoneCost = Math.max(2, Math.min(cells, Math.min(CellCosts.MAX_COST, Integer.MAX_VALUE / cells)));
+        costs.clearCellCosts();
+        risk.clearCellCosts();
+        for (GhostCL g : ghosts) {
+            int[] gp = parsePosArray(g.getPos(0));
+            for (int dx = -blockRadius; dx <= blockRadius; dx++) {
+                for (int dy = -blockRadius; dy <= blockRadius; dy++) {
+                    int bx = gp[0] + dx;
+                    int by = gp[1] + dy;
+                    if (isValid(board, bx, by)) {
+                        costs.setCellCost(bx, by, CellCosts.BLOCKED);
+                        risk.setCellCost(bx, by, zoneCost);
                     }
                 }
             }
         }
-
-        // never block our own current cell
-        if (inBounds(board, startX, startY)) visited[startX][startY] = false;
-
-        Queue<int[]> q = new LinkedList<>();
-        int[] moves = {Game.UP, Game.DOWN, Game.LEFT, Game.RIGHT}; // priority order
-
-        // seed BFS with 1-step neighbors and remember the first direction
-        for (int dir : moves) {
-            int nx = startX + dx(dir);
-            int ny = startY + dy(dir);
-
-            if (isValid(board, nx, ny) && !visited[nx][ny]) {
-                if (isFood(board, nx, ny)) return dir;
-                visited[nx][ny] = true;
-                q.add(new int[]{nx, ny, dir});
-            }
+        // the last cost set for a cell wins: our own cell is the start of the search, not an obstacle
+        costs.setCellCost(startX, startY, 1);
+        risk.setCellCost(startX, startY, 1);
+        // map holds the board (see ghostDistances)
+        Index2D start = new Index2D(startX, startY);
+        if (map.weightedPathToNearest(start, costs, FOOD, path) < 0
+                && map.weightedPathToNearest(start, risk, FOOD, path) < 0) {
+            return -1;
         }
-
-        while (!q.isEmpty()) {
-            int[] curr = q.poll();
-            int cx = curr[0], cy = curr[1], firstDir = curr[2];
-
-            if (isFood(board, cx, cy)) return firstDir;
-
-            for (int dir : moves) {
-                int nx = cx + dx(dir);
-                int ny = cy + dy(dir);
-
-                if (isValid(board, nx, ny) && !visited[nx][ny]) {
-                    visited[nx][ny] = true;
-                    q.add(new int[]{nx, ny, firstDir});
-                }
-            }
-        }
-
-        return -1;
+        if (path.length() < 2) return -1;
+        return dirTo(startX, startY, path.x(1), path.y(1));
     }
 
-    private boolean isFood(int[][] board, int x, int y) {
-        // keep your original assumption: 2 or 3 are food
-        return board[x][y] == 2 || board[x][y] == 3;
+    /**
+     * @param cost the cost of the cells which are not walls.
+     */
+    private static CellCosts foodCosts(int cost) {
+        CellCosts ans = new CellCosts(cost);
+        ans.setColorCost(1, CellCosts.BLOCKED);
+        return ans;
     }
 
     // ----------------------------
     // Danger / Run away
     // ----------------------------
-    private boolean isInDanger(int x, int y, GhostCL[] ghosts, double radius) {
-        for (GhostCL g : ghosts) {
-            int[] gp = parsePosArray(g.getPos(0));
-            double dist = Math.sqrt(Math.pow(x - gp[0], 2) + Math.pow(y - gp[1], 2));
-            if (dist < radius) return true;
+    /**
+     * Maze distance from every cell to the nearest ghost (walls are 1), one BFS for all the ghosts.
+     */
+    private NearestSource ghostDistances(int[][] board, GhostCL[] ghosts) {
+        if (map == null) map = new Map(board);
+        else map.init(board);
+        map.setCyclic(false);
+
+        Pixel2D[] sources = new Pixel2D[ghosts.length];
+        for (int i = 0; i < ghosts.length; i++) {
+            int[] gp = parsePosArray(ghosts[i].getPos(0));
+            sources[i] = new Index2D(gp[0], gp[1]);
         }
-        return false;
+        return map.multiSourceDistance(sources, 1);
+    }
+
+    private boolean isInDanger(int x, int y, NearestSource danger, int radius) {
+        int dist = danger.getDistance(x, y);
+        return dist != -1 && dist < radius;
     }
 
-    private int runAway(int[][] board, int x, int y, GhostCL[] ghosts) {
+    private int runAway(int[][] board, int x, int y, NearestSource danger) {
         int[] dirs = {Game.UP, Game.DOWN, Game.LEFT, Game.RIGHT};
         int bestMove = -1;
         double bestScore = -1;
+        int unreachable = board.length * board[0].length; // no ghost can get there: as far as it gets
 
         for (int dir : dirs) {
             int nx = x + dx(dir);
@@ -152,13 +157,9 @@ public class MyAlgo implements PacManAlgo {
 
             if (!isValid(board, nx, ny)) continue;
 
-            // score by distance to closest ghost (bigger is better)
-            double closest = Double.MAX_VALUE;
-            for (GhostCL g : ghosts) {
-                int[] gp = parsePosArray(g.getPos(0));
-                double d = Math.sqrt(Math.pow(nx - gp[0], 2) + Math.pow(ny - gp[1], 2));
-                if (d < closest) closest = d;
-            }
+            // score by maze distance to closest ghost (bigger is better)
+            int closest = danger.getDistance(nx, ny);
+            if (closest == -1) closest = unreachable;
 
             // small preference to keep direction (less jitter while escaping)
             double keepBonus = (dir == lastDir) ? 0.25 : 0.0;
@@ -250,6 +251,13 @@ public class MyAlgo implements PacManAlgo {
     // ----------------------------
     // Directions helpers
     // ----------------------------
+    private int dirTo(int x, int y, int toX, int toY) {
+        for (int dir : new int[]{Game.UP, Game.DOWN, Game.LEFT, Game.RIGHT}) {
+            if (x + dx(dir) == toX && y + dy(dir) == toY) return dir;
+        }
+        return -1;
+    }
+
     private int randomDir() {
         int[] dirs = {Game.UP, Game.DOWN, Game.LEFT, Game.RIGHT};
         return dirs[(int) (Math.random() * 4)];
@@ -0,0 +1,70 @@
+package assignments.Ex3.server;
+
+import exe.ex3.game.Game;
+import exe.ex3.game.GhostCL;
+import exe.ex3.game.PacmanGame;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit tests for the MyAlgo food search.
+ */
+public class MyAlgoTest {
+
+    @Test
+    public void testNearestFoodWhenEveryWayCrossesAGhostZone() {
+        // two ghosts boxed in by walls above and below pacman (10,10): no ghost can reach it, but their zones
+        // cover pacman and its way out to both sides, so every food is behind 2 zone cells.
+        int[][] board = new int[30][30];
+        box(board, 10, 8);
+        box(board, 10, 12);
+        board[7][9] = 2;  // 4 steps away, to the left
+        board[13][0] = 2; // 13 steps away, to the right
+        FakeGame game = new FakeGame(board, "10,10", new String[]{"10,8", "10,12"});
+
+        assertEquals(Game.LEFT, new MyAlgo().move(game));
+    }
+
+    /** Walls around [x][y]. */
+    private static void box(int[][] board, int x, int y) {
+        for (int i = -1; i <= 1; i++) {
+            for (int j = -1; j <= 1; j++) {
+                if (i != 0 || j != 0) board[x + i][y + j] = 1;
+            }
+        }
+    }
+
+    private static final class FakeGame implements PacmanGame {
+        private final int[][] board;
+        private final String pos;
+        private final GhostCL[] ghosts;
+
+        FakeGame(int[][] board, String pos, String[] ghostPos) {
+            this.board = board;
+            this.pos = pos;
+            ghosts = new GhostCL[ghostPos.length];
+            for (int i = 0; i < ghostPos.length; i++) {
+                String p = ghostPos[i];
+                ghosts[i] = new GhostCL() {
+                    @Override public int getType() { return RANDOM_WALK0; }
+                    @Override public String getPos(int id) { return p; }
+                    @Override public String getInfo() { return ""; }
+                    @Override public double remainTimeAsEatable(int id) { return 0; }
+                    @Override public int getStatus() { return PLAY; }
+                };
+            }
+        }
+
+        @Override public String getPos(int id) { return pos; }
+        @Override public int[][] getGame(int id) { return board; }
+        @Override public GhostCL[] getGhosts(int id) { return ghosts; }
+        @Override public boolean isCyclic() { return false; }
+        @Override public Character getKeyChar() { return null; }
+        @Override public String move(int dir) { return ""; }
+        @Override public void play() {}
+        @Override public String end(int id) { return ""; }
+        @Override public String getData(int id) { return ""; }
+        @Override public int getStatus() { return PLAY; }
+        @Override public String init(int level, String id, boolean cy, long seed, double res, int dt, int scenario) { return ""; }
+    }
+}
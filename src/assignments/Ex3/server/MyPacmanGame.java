@@ -1,5 +1,8 @@
 package assignments.Ex3.server;
 
+import assignments.Ex3.BulkOps;
+import assignments.Ex3.DistanceOracle;
+import assignments.Ex3.Map;
 import exe.ex3.game.GhostCL;
 import exe.ex3.game.PacmanGame;
 import java.util.LinkedList;
@@ -25,10 +28,16 @@ public class MyPacmanGame implements PacmanGame {
     private int powerUpTimer = 0;
     private static final int POWER_UP_DURATION = 40;
     private int moveCount = 0;
+    // Distances between the cells ghosts may walk on (walls and the Ghost House are blocked)
+    private DistanceOracle ghostOracle;
+    // Coins (2) and power pellets (3) left on the board: counted once, then decremented as they are eaten
+    private int pellets;
 
     @Override
     public String init(int level, String id, boolean cy, long seed, double res, int dt, int scenario) {
         this.board = createClassicMap();
+        this.ghostOracle = createGhostOracle();
+        this.pellets = countPellets();
         this.status = PLAY;
         return "OK";
     }
@@ -93,9 +102,11 @@ public class MyPacmanGame implements PacmanGame {
             // Handle coin collection
             if (board[nextX][nextY] == 2) {
                 board[nextX][nextY] = 0;
+                pellets--;
                 score += 10;
             } else if (board[nextX][nextY] == 3) { // Power pellet
                 board[nextX][nextY] = 0;
+                pellets--;
                 score += 50;
                 powerUpTimer = POWER_UP_DURATION;
                 for(int i=0; i<ghostsEaten.length; i++) ghostsEaten[i] = false;
@@ -138,12 +149,16 @@ public class MyPacmanGame implements PacmanGame {
 
     private boolean isGameOver() {
         // Check if any coins remain
-        for (int x = 0; x < board.length; x++) {
-            for (int y = 0; y < board[0].length; y++) {
-                if (board[x][y] == 2 || board[x][y] == 3) return false;
-            }
-        }
-        return true;
+        return pellets == 0;
+    }
+
+    /**
+     * Counts the coins and power pellets on the board (once per game, then they are tracked as eaten).
+     */
+    private int countPellets() {
+        int h = board[0].length, ans = 0;
+        for (int[] column : board) ans += BulkOps.count(column, 0, h, 2) + BulkOps.count(column, 0, h, 3);
+        return ans;
     }
 
     /**
@@ -179,8 +194,8 @@ public class MyPacmanGame implements PacmanGame {
             if (isScared) {
                 moveRandom(i, gx, gy); // Random movement when scared
             } else {
-                // BFS Chase Logic
-                int[] bestMove = getNextMoveBFS(gx, gy, pacXY[0], pacXY[1]);
+                // Chase Logic (precomputed distances, BFS as a fallback)
+                int[] bestMove = getNextMove(gx, gy, pacXY[0], pacXY[1]);
                 if (bestMove != null) {
                     ghostsPos[i] = bestMove[0] + "," + bestMove[1];
                 } else {
@@ -211,6 +226,53 @@ public class MyPacmanGame implements PacmanGame {
         }
     }
 
+    /**
+     * Picks the neighbor closest to the target using the precomputed ghost distances.
+     * Gives the same move as getNextMoveBFS (same tie order), which is still used when the
+     * target is inside the Ghost House (a blocked cell for the oracle).
+     */
+    private int[] getNextMove(int startX, int startY, int targetX, int targetY) {
+        if (ghostOracle == null || isInsideGhostHouse(targetX, targetY) || (startX == targetX && startY == targetY)) {
+            return getNextMoveBFS(startX, startY, targetX, targetY);
+        }
+        int w = board.length;
+        int bestDist = Integer.MAX_VALUE;
+        int[] bestMove = null;
+        int[][] dirs = {{0,-1}, {0,1}, {-1,0}, {1,0}};
+
+        for(int[] d : dirs) {
+            int nx = startX + d[0];
+            int ny = startY + d[1];
+            if (nx < 0) nx = w - 1; else if (nx >= w) nx = 0;
+
+            int dist = isValid(nx, ny) ? ghostOracle.distance(nx, ny, targetX, targetY) : -1;
+            if (dist != -1 && dist < bestDist) {
+                bestDist = dist;
+                bestMove = new int[]{nx, ny};
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Builds the distance oracle of the board's walls, with the Ghost House blocked as well.
+     * The map is cyclic for the tunnel (x); the top and bottom rows are walls, so wrapping y adds no moves.
+     */
+    private DistanceOracle createGhostOracle() {
+        Map walls = new Map(board);
+        for (int x = 0; x < board.length; x++) {
+            for (int y = 0; y < board[0].length; y++) {
+                if (isInsideGhostHouse(x, y)) walls.setPixel(x, y, 1);
+            }
+        }
+        walls.setCyclic(true);
+        return DistanceOracle.of(walls, 1);
+    }
+
+    private boolean isInsideGhostHouse(int x, int y) {
+        return y >= 12 && y <= 16 && x >= 10 && x <= 17;
+    }
+
     /**
      * Calculates the Shortest Path to the target using BFS.
      * Crucially, treats the "Ghost House" as a wall to prevent re-entry.
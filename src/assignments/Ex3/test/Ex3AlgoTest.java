@@ -1,11 +1,14 @@
 package assignments.Ex3.test;
 
 import assignments.Ex3.Ex3Algo;
+import exe.ex3.game.Game;
 import exe.ex3.game.GhostCL;
 import exe.ex3.game.PacManAlgo;
 import exe.ex3.game.PacmanGame;
 import org.junit.jupiter.api.Test;
 
+import java.awt.*;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class Ex3AlgoTest {
@@ -14,6 +17,7 @@ public class Ex3AlgoTest {
     static class FakeGame implements PacmanGame {
         private final int[][] board;
         private String pacPos;
+        private GhostCL[] ghosts;
         private final boolean cyclic;
 
         FakeGame(int[][] board, String pacPos, boolean cyclic) {
@@ -28,7 +32,7 @@ public class Ex3AlgoTest {
 
         // not used in our unit tests / algo (return safe defaults)
         @Override public Character getKeyChar() { return null; }
-        @Override public GhostCL[] getGhosts(int id) { return null; }
+        @Override public GhostCL[] getGhosts(int id) { return ghosts; }
         @Override public String move(int dir) { return ""; }
         @Override public void play() {}
         @Override public String end(int id) { return ""; }
@@ -37,6 +41,16 @@ public class Ex3AlgoTest {
         @Override public String init(int level, String id, boolean cy, long seed, double res, int dt, int scenario) { return ""; }
     }
 
+    static GhostCL ghostAt(String pos) {
+        return new GhostCL() {
+            @Override public int getType() { return RANDOM_WALK0; }
+            @Override public String getPos(int id) { return pos; }
+            @Override public String getInfo() { return ""; }
+            @Override public double remainTimeAsEatable(int id) { return 0; }
+            @Override public int getStatus() { return PLAY; }
+        };
+    }
+
     @Test
     public void testAlgoCreation() {
         PacManAlgo algo = new Ex3Algo();
@@ -55,5 +69,70 @@ public class Ex3AlgoTest {
                 "Direction must be one of {0,1,2,3,4}");
     }
 
+    @Test
+    public void testMovesTowardsFoodOnLargeBoards() {
+        // too many free cells for a DistanceOracle, so the wall distances come from the junction graph
+        int[][] board = new int[80][80];
+        int blue = Game.getIntColor(Color.BLUE, 0);
+        for (int y = 0; y < 79; y++) board[3][y] = blue; // a wall between pacman and the food, open at y=79
+        board[5][1] = Game.getIntColor(Color.PINK, 0);
+        FakeGame game = new FakeGame(board, "1,1", false);
+
+        assertEquals(Game.UP, new Ex3Algo().move(game)); // towards the gap (up is +y)
+    }
+
+    @Test
+    public void testFollowsBoardChangesBetweenTicks() {
+        // one agent for the whole game: the walls it keeps from the last tick must follow the board
+        int[][] board = new int[80][80];
+        int blue = Game.getIntColor(Color.BLUE, 0);
+        for (int y = 0; y < 79; y++) board[3][y] = blue;
+        board[5][1] = Game.getIntColor(Color.PINK, 0);
+        FakeGame game = new FakeGame(board, "1,1", false);
+        Ex3Algo algo = new Ex3Algo();
+        assertEquals(Game.UP, algo.move(game));
+
+        board[3][79] = blue; // the gap moves to y=0
+        board[3][0] = 0;
+        assertEquals(Game.DOWN, algo.move(game));
+        assertEquals(Game.DOWN, algo.move(game)); // an unchanged board
+    }
+
+    @Test
+    public void testFollowsItsPlanUntilItIsInvalid() {
+        int[][] board = new int[10][3];
+        int pink = Game.getIntColor(Color.PINK, 0);
+        board[9][1] = pink;
+        FakeGame game = new FakeGame(board, "0,1", false);
+        Ex3Algo algo = new Ex3Algo();
+        assertEquals(Game.RIGHT, algo.move(game));
+        game.pacPos = "1,1";
+        assertEquals(Game.RIGHT, algo.move(game));
+        assertEquals(Game.RIGHT, algo.move(game)); // pacman did not move yet
+        game.pacPos = "2,1";
+        assertEquals(Game.RIGHT, algo.move(game));
+        assertEquals(1, algo.getReplans());
+        assertEquals(3, algo.getReuses());
+
+        game.ghosts = new GhostCL[]{ghostAt("6,0")}; // its zone covers (6,1), on the plan
+        algo.move(game);
+        assertEquals(2, algo.getReplans());
+        game.ghosts = null;
+
+        assertEquals(Game.RIGHT, algo.move(game)); // a clean tick makes a new plan
+        assertEquals(3, algo.getReplans());
+        assertEquals(Game.RIGHT, algo.move(game)); // which is followed
+        assertEquals(4, algo.getReuses());
+        game.pacPos = "2,0"; // off the plan
+        algo.move(game);
+        assertEquals(4, algo.getReplans());
+        assertEquals(4, algo.getReuses());
 
-}
\ No newline at end of file
+        board[9][1] = 0; // the plan's pink is gone (pacman stays on the plan)
+        board[0][1] = pink;
+        int dir = algo.move(game);
+        assertTrue(dir == Game.LEFT || dir == Game.UP);
+        assertEquals(5, algo.getReplans());
+        assertEquals(4, algo.getReuses());
+    }
+}
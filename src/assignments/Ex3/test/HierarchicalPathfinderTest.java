@@ -0,0 +1,78 @@
+package assignments.Ex3.test;
+
+import assignments.Ex3.HierarchicalPathfinder;
+import assignments.Ex3.Index2D;
+import assignments.Ex3.Map;
+import assignments.Ex3.PathBuffer;
+import assignments.Ex3.Pixel2D;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit tests for the HierarchicalPathfinder class.
+ */
+public class HierarchicalPathfinderTest {
+
+    @Test
+    public void testPathsAcrossClusters() {
+        Map map = serpentine();
+        HierarchicalPathfinder hpa = new HierarchicalPathfinder(map, 1, 16);
+        assertEquals(16, hpa.getClusterSize());
+        assertTrue(hpa.nodeCount() > 0);
+        Pixel2D a = new Index2D(0, 0), b = new Index2D(39, 0);
+        Pixel2D[] path = hpa.findPath(a, b);
+        assertValid(map, path, a, b);
+        int shortest = map.shortestPath(a, b, 1).length;
+        assertTrue(path.length >= shortest && path.length <= shortest * 11 / 10);
+
+        PathBuffer buf = new PathBuffer();
+        assertTrue(hpa.findPath(a, a, buf));
+        assertEquals(1, buf.length());
+        assertFalse(hpa.findPath(a, new Index2D(10, 5), buf)); // a wall
+        assertTrue(buf.isEmpty());
+        assertThrows(RuntimeException.class, () -> new HierarchicalPathfinder(map, 1, 20));
+    }
+
+    @Test
+    public void testFollowsTheMapChanges() {
+        Map map = serpentine();
+        HierarchicalPathfinder hpa = new HierarchicalPathfinder(map, 1, 16);
+        Pixel2D a = new Index2D(0, 0), b = new Index2D(39, 0);
+        assertNotNull(hpa.findPath(a, b));
+
+        map.setPixel(20, 0, 1); // closes the middle gap
+        assertNull(hpa.findPath(a, b));
+        assertNotNull(hpa.findPath(a, new Index2D(15, 30)));
+
+        map.setPixel(20, 17, 0); // a new gap, in another cluster
+        Pixel2D[] path = hpa.findPath(a, b);
+        assertValid(map, path, a, b);
+        assertEquals(new HierarchicalPathfinder(map, 1, 16).nodeCount(), hpa.nodeCount());
+    }
+
+    /**
+     * A 40x40 map whose walls at x=10, 20, 30 leave a single gap each, at the bottom, the top and the bottom.
+     */
+    private static Map serpentine() {
+        int[][] arr = new int[40][40];
+        for (int y = 0; y < 39; y++) {
+            arr[10][y] = 1;
+            arr[20][y + 1] = 1;
+            arr[30][y] = 1;
+        }
+        Map map = new Map(arr);
+        map.setCyclic(false);
+        return map;
+    }
+
+    private static void assertValid(Map map, Pixel2D[] path, Pixel2D a, Pixel2D b) {
+        assertNotNull(path);
+        assertEquals(a, path[0]);
+        assertEquals(b, path[path.length - 1]);
+        for (int i = 0; i < path.length; i++) {
+            assertNotEquals(1, map.getPixel(path[i]));
+            if (i > 0) assertEquals(1.0, path[i].distance2D(path[i - 1]), 0.0001);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package assignments.Ex3.test;
+
+import assignments.Ex3.Index2D;
+import assignments.Ex3.JunctionGraph;
+import assignments.Ex3.Map;
+import assignments.Ex3.PathBuffer;
+import assignments.Ex3.Pixel2D;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit tests for the JunctionGraph class.
+ */
+public class JunctionGraphTest {
+
+    // 0 = free, 1 = wall
+    private static final int[][] MAZE = {
+            {0, 0, 0, 0, 0, 0, 0},
+            {0, 1, 1, 0, 1, 1, 0},
+            {0, 0, 0, 0, 0, 1, 0},
+            {1, 0, 1, 1, 0, 1, 0},
+            {0, 0, 0, 1, 0, 0, 0},
+            {0, 1, 0, 0, 0, 1, 1},
+            {0, 0, 0, 1, 0, 0, 0}
+    };
+
+    @Test
+    public void testCorridorsAndJunctions() {
+        // a ring of corridors around a 3x3 block, with a dead end at (6,2)
+        int[][] arr = new int[7][5];
+        for (int x = 0; x < 7; x++) {
+            for (int y = 0; y < 5; y++) arr[x][y] = 1;
+        }
+        for (int i = 0; i < 5; i++) {
+            arr[0][i] = 0;
+            arr[4][i] = 0;
+            arr[i][0] = 0;
+            arr[i][4] = 0;
+        }
+        arr[5][2] = 0;
+        arr[6][2] = 0;
+        Map map = new Map(arr);
+        map.setCyclic(false);
+        JunctionGraph g = new JunctionGraph(map, 1);
+        assertEquals(2, g.nodeCount()); // (4,2) and the dead end
+        assertEquals(2, g.edgeCount()); // the ring (a loop) and the dead end's corridor
+        assertTrue(g.matches(map));
+
+        assertTrue(g.source(new Index2D(0, 2)));
+        assertEquals(8, g.distanceTo(4, 2));
+        assertEquals(10, g.distanceTo(6, 2));
+        assertEquals(2, g.distanceTo(0, 0));
+        assertEquals(-1, g.distanceTo(2, 2)); // a wall
+        PathBuffer path = new PathBuffer();
+        assertTrue(g.pathTo(new Index2D(6, 2), path));
+        assertEquals(11, path.length());
+        for (int i = 1; i < path.length(); i++) {
+            assertEquals(1.0, path.get(i).distance2D(path.get(i - 1)), 0.0001);
+        }
+        assertEquals(new Index2D(6, 2), path.get(10));
+        assertNull(g.shortestPath(new Index2D(2, 2), new Index2D(0, 0)));
+
+        map.setPixel(0, 1, 1);
+        assertFalse(g.matches(map));
+        g = new JunctionGraph(map, 1);
+        assertTrue(g.source(new Index2D(0, 2)));
+        assertEquals(14, g.distanceTo(0, 0)); // all the way around
+    }
+
+    @Test
+    public void testDistancesMatchBfs() {
+        Map map = new Map(MAZE);
+        map.setCyclic(false);
+        JunctionGraph g = new JunctionGraph(map, 1);
+        assertEquals(8, g.nodeCount());
+        Pixel2D start = new Index2D(0, 0);
+        assertTrue(g.source(start));
+        for (int x = 0; x < map.getWidth(); x++) {
+            for (int y = 0; y < map.getHeight(); y++) {
+                Pixel2D p = new Index2D(x, y);
+                Pixel2D[] bfs = map.shortestPath(start, p, 1);
+                assertEquals(bfs == null ? -1 : bfs.length - 1, g.distanceTo(x, y));
+            }
+        }
+        map.setCyclic(true); // wrapping around adds junctions
+        assertFalse(g.matches(map));
+        g = new JunctionGraph(map, 1);
+        assertTrue(g.source(start));
+        assertEquals(1, g.distanceTo(6, 0));
+    }
+}
@@ -0,0 +1,589 @@
+package assignments.Ex3.test;
+
+import assignments.Ex3.BulkOps;
+import assignments.Ex3.CellCosts;
+import assignments.Ex3.DistanceEngine;
+import assignments.Ex3.DistanceField;
+import assignments.Ex3.DistanceOracle;
+import assignments.Ex3.Index2D;
+import assignments.Ex3.Map;
+import assignments.Ex3.Map2D;
+import assignments.Ex3.MapIO;
+import assignments.Ex3.NearestSource;
+import assignments.Ex3.NearestTargets;
+import assignments.Ex3.PathBuffer;
+import assignments.Ex3.PathCache;
+import assignments.Ex3.PathEngine;
+import assignments.Ex3.Pixel2D;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.IntBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit tests for the Map class.
+ */
+public class MapTest {
+
+    // 0 = free, 1 = wall
+    private static final int[][] MAZE = {
+            {0, 0, 0, 0, 0},
+            {1, 1, 1, 1, 0},
+            {0, 0, 0, 1, 0},
+            {0, 1, 0, 0, 0},
+            {0, 1, 1, 1, 1},
+            {0, 0, 0, 0, 0}
+    };
+
+    @Test
+    public void testInitAndGetMap() {
+        Map m = new Map(MAZE);
+        assertEquals(6, m.getWidth());
+        assertEquals(5, m.getHeight());
+        assertArrayEquals(MAZE, m.getMap());
+        assertEquals(1, m.getPixel(1, 2));
+        assertEquals(0, m.getPixel(new Index2D(3, 2)));
+
+        int[][] copy = m.getMap();
+        copy[0][0] = 7;
+        assertEquals(0, m.getPixel(0, 0), "getMap should return a deep copy");
+    }
+
+    @Test
+    public void testViewAndBulkCopy() {
+        Map m = new Map(MAZE);
+        IntBuffer view = m.view();
+        assertEquals(30, view.capacity());
+        assertEquals(1, view.get(1 * 5 + 2));
+        m.setPixel(2, 4, 9);
+        assertEquals(9, view.get(2 * 5 + 4), "the view should not be a copy");
+        assertThrows(ReadOnlyBufferException.class, () -> view.put(0, 5));
+
+        int[] flat = new int[30];
+        m.exportTo(flat);
+        Map other = new Map(6, 5, 0);
+        other.importFrom(flat);
+        assertArrayEquals(m.getMap(), other.getMap());
+    }
+
+    @Test
+    public void testOutOfBounds() {
+        Map m = new Map(MAZE);
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> m.getPixel(0, 5));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> m.setPixel(-1, 0, 1));
+        assertThrows(RuntimeException.class, () -> m.init(new int[][]{{1, 2}, {3}}));
+    }
+
+    @Test
+    public void testShortestPathAndAllDistance() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        Pixel2D[] path = m.shortestPath(new Index2D(0, 0), new Index2D(5, 0), 1);
+        assertNotNull(path);
+        assertEquals(16, path.length);
+        assertEquals(new Index2D(0, 0), path[0]);
+        assertEquals(new Index2D(5, 0), path[path.length - 1]);
+        for (int i = 1; i < path.length; i++) {
+            assertEquals(1.0, path[i - 1].distance2D(path[i]), 0.0001);
+        }
+
+        Map2D dist = m.allDistance(new Index2D(0, 0), 1);
+        assertEquals(15, dist.getPixel(5, 0));
+        assertEquals(-1, dist.getPixel(1, 0));
+        assertNull(m.shortestPath(new Index2D(0, 0), new Index2D(1, 0), 1));
+    }
+
+    @Test
+    public void testDistanceEngines() {
+        Map m = new Map(MAZE);
+        m.setPixel(2, 0, 2);
+        for (boolean cyclic : new boolean[]{false, true}) {
+            m.setCyclic(cyclic);
+            for (int obs = 1; obs <= 2; obs++) {
+                Map2D expected = m.allDistance(new Index2D(0, 0), obs, DistanceEngine.BFS);
+                for (DistanceEngine engine : DistanceEngine.values()) {
+                    Map2D dist = m.allDistance(new Index2D(0, 0), obs, engine);
+                    assertArrayEquals(expected.getMap(), dist.getMap(), engine + " cyclic=" + cyclic + " obs=" + obs);
+                }
+            }
+        }
+        // large enough (with wide enough levels) for the parallel engine to split its levels
+        Map big = new Map(1200, 1200, 0);
+        for (int x = 0; x < 1200; x++) {
+            for (int y = 0; y < 1200; y++) {
+                if (x % 5 == 0 && y % 7 == 0) big.setPixel(x, y, 1);
+            }
+        }
+        Pixel2D center = new Index2D(601, 600);
+        Map2D expected = big.allDistance(center, 1, DistanceEngine.BFS);
+        for (DistanceEngine engine : DistanceEngine.values()) {
+            assertArrayEquals(expected.getMap(), big.allDistance(center, 1, engine).getMap(), engine.toString());
+        }
+        m.setDistanceEngine(DistanceEngine.BIT_PARALLEL);
+        assertEquals(DistanceEngine.BIT_PARALLEL, m.getDistanceEngine());
+        assertEquals(-1, m.allDistance(new Index2D(1, 0), 1).getPixel(0, 0));
+        assertThrows(RuntimeException.class, () -> m.setDistanceEngine(null));
+    }
+
+    @Test
+    public void testBidirectionalPath() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        Pixel2D[] bfs = m.shortestPath(new Index2D(0, 0), new Index2D(5, 0), 1, PathEngine.BFS);
+        m.setPathEngine(PathEngine.BIDIRECTIONAL);
+        Pixel2D[] bi = m.shortestPath(new Index2D(0, 0), new Index2D(5, 0), 1);
+        assertEquals(bfs.length, bi.length);
+        assertEquals(new Index2D(0, 0), bi[0]);
+        assertEquals(new Index2D(5, 0), bi[bi.length - 1]);
+        for (int i = 1; i < bi.length; i++) {
+            assertEquals(1.0, bi[i - 1].distance2D(bi[i]), 0.0001);
+            assertNotEquals(1, m.getPixel(bi[i]));
+        }
+        assertNull(m.shortestPath(new Index2D(0, 0), new Index2D(1, 4), 0));
+
+        m.setCyclic(true);
+        Pixel2D[] wrap = m.shortestPath(new Index2D(0, 0), new Index2D(5, 0), 1);
+        assertEquals(2, wrap.length, "on a cyclic map (0,0) and (5,0) are neighbors");
+    }
+
+    @Test
+    public void testGoalDirectedEngines() {
+        Map m = new Map(MAZE);
+        for (boolean cyclic : new boolean[]{false, true}) {
+            m.setCyclic(cyclic);
+            for (int x = 0; x < m.getWidth(); x++) {
+                for (int y = 0; y < m.getHeight(); y++) {
+                    Pixel2D target = new Index2D(x, y);
+                    Pixel2D[] bfs = m.shortestPath(new Index2D(0, 0), target, 1, PathEngine.BFS);
+                    Pixel2D[] path = m.shortestPath(new Index2D(0, 0), target, 1, PathEngine.ASTAR);
+                    if (bfs == null) {
+                        assertNull(path);
+                        continue;
+                    }
+                    assertEquals(bfs.length, path.length, "A* to " + target);
+                    assertEquals(new Index2D(0, 0), path[0]);
+                    assertEquals(target, path[path.length - 1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPathBuffer() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        PathBuffer buf = new PathBuffer();
+        for (PathEngine engine : PathEngine.values()) {
+            Pixel2D[] expected = m.shortestPath(new Index2D(0, 0), new Index2D(5, 0), 1, engine);
+            assertTrue(m.shortestPath(new Index2D(0, 0), new Index2D(5, 0), 1, engine, buf));
+            assertArrayEquals(expected, buf.toArray(), engine.toString());
+            assertEquals(expected.length - 1, buf.distance());
+            assertEquals(expected[1], buf.firstStep());
+            assertEquals(expected[3].getX(), buf.x(3));
+            assertEquals(expected[3].getY(), buf.y(3));
+            assertEquals(buf.x(3) * m.getHeight() + buf.y(3), buf.cell(3));
+        }
+        assertTrue(m.shortestPath(new Index2D(2, 2), new Index2D(2, 2), 1, buf));
+        assertEquals(1, buf.length());
+        assertEquals(new Index2D(2, 2), buf.firstStep());
+
+        assertFalse(m.shortestPath(new Index2D(0, 0), new Index2D(1, 4), 0, buf));
+        assertTrue(buf.isEmpty());
+        assertNull(buf.toArray());
+        assertNull(buf.firstStep());
+        assertThrows(IndexOutOfBoundsException.class, () -> buf.x(0));
+    }
+
+    @Test
+    public void testPathCache() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        assertNull(m.getPathCache());
+        m.setPathCacheSize(2);
+        PathCache cache = m.getPathCache();
+        Pixel2D a = new Index2D(0, 0), b = new Index2D(5, 0);
+
+        Pixel2D[] first = m.shortestPath(a, b, 1);
+        assertArrayEquals(first, m.shortestPath(a, b, 1));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        Map2D dist = m.allDistance(a, 1);
+        dist.setPixel(5, 0, 100); // the cached copy is not changed
+        assertEquals(15, m.allDistance(a, 1).getPixel(5, 0));
+        assertEquals(2, cache.hits());
+
+        assertEquals(5, m.shortestPath(a, new Index2D(0, 4), 1).length); // evicts the least recently used, the path a->b
+        assertEquals(1, cache.evictions());
+        m.shortestPath(a, b, 1);
+        assertEquals(4, cache.misses());
+
+        m.init(MAZE); // the same board: still valid
+        m.shortestPath(a, b, 1);
+        assertEquals(3, cache.hits());
+        m.setPixel(0, 4, 1); // blocks the only way from a to b
+        assertNull(m.shortestPath(a, b, 1));
+        assertEquals(1, cache.invalidations());
+        assertThrows(RuntimeException.class, () -> m.setPathCacheSize(-1));
+    }
+
+    @Test
+    public void testChangeTracking() {
+        Map m = new Map(40, 20, 0);
+        long v0 = m.getVersion();
+        assertFalse(m.changedSince(v0));
+        assertEquals(0, m.changedTiles(v0).length);
+
+        m.setPixel(17, 3, 1);
+        assertTrue(m.changedSince(v0));
+        assertArrayEquals(new Pixel2D[]{new Index2D(16, 0)}, m.changedTiles(v0));
+        assertTrue(m.isChanged(31, 15, v0));
+        assertFalse(m.isChanged(15, 3, v0));
+
+        long v1 = m.getVersion();
+        int[][] board = m.getMap();
+        m.init(board); // the same cells: no change
+        assertEquals(v1, m.getVersion());
+        board[39][19] = 2;
+        m.init(board);
+        assertArrayEquals(new Pixel2D[]{new Index2D(32, 16)}, m.changedTiles(v1));
+        assertEquals(2, m.changedTiles(v0).length);
+
+        long v2 = m.getVersion();
+        m.setCyclic(false);
+        m.fill(new Index2D(0, 0), 3); // a whole map change and a fill of (almost) everything
+        assertEquals(6, m.changedTiles(v2).length);
+        m.setCyclic(false);
+        long v3 = m.getVersion();
+        assertEquals(0, m.changedTiles(v3).length);
+        m.fill(new Index2D(17, 3), 4);
+        assertArrayEquals(new Pixel2D[]{new Index2D(16, 0)}, m.changedTiles(v3));
+    }
+
+    @Test
+    public void testBulkCountAndReplace() {
+        Map m = new Map(MAZE);
+        assertEquals(10, m.count(1));
+        assertEquals(20, m.count(0));
+        assertEquals(0, m.count(7));
+        long v0 = m.getVersion();
+        assertEquals(0, m.replace(7, 1));
+        assertEquals(v0, m.getVersion());
+        assertEquals(10, m.replace(1, 5));
+        assertEquals(0, m.count(1));
+        assertEquals(10, m.count(5));
+        assertEquals(5, m.getPixel(1, 0));
+        assertTrue(m.changedSince(v0));
+
+        Map big = new Map(40, 20, 0);
+        big.setPixel(33, 17, 2);
+        long v1 = big.getVersion();
+        assertEquals(1, big.replace(2, 3));
+        assertArrayEquals(new Pixel2D[]{new Index2D(32, 16)}, big.changedTiles(v1));
+
+        int[] cells = {0, 2, 2, 0, 2};
+        assertEquals(3, BulkOps.count(cells, 0, 5, 2));
+        assertEquals(4, BulkOps.indexOf(cells, 3, 5, 2));
+        assertEquals(-1, BulkOps.indexOf(cells, 3, 4, 2));
+        assertEquals(0b10110L, BulkOps.maskWord(cells, 0, 5, 2));
+    }
+
+    @Test
+    public void testColorIndex() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        assertFalse(m.hasColorIndex());
+        m.setColorIndex(true);
+        assertTrue(m.hasColorIndex());
+        assertEquals(10, m.count(1));
+        m.setPixel(0, 0, 2);
+        m.setPixel(5, 4, 2);
+        m.setPixel(5, 4, 3);
+        assertEquals(1, m.count(2));
+        assertEquals(1, m.count(3));
+        assertArrayEquals(new Pixel2D[]{new Index2D(0, 0)}, m.cellsOf(2));
+
+        assertEquals(18, m.fill(new Index2D(2, 0), 7)); // all the free cells
+        assertEquals(18, m.count(7));
+        assertEquals(0, m.count(0));
+        m.replace(7, 2);
+        assertEquals(19, m.count(2));
+        assertEquals(0, m.cellsOf(7).length);
+
+        int[][] board = m.getMap();
+        board[0][0] = 0;
+        m.init(board);
+        assertEquals(18, m.count(2));
+        assertArrayEquals(new Pixel2D[]{new Index2D(0, 0)}, m.cellsOf(0));
+        m.init(4, 4, 9);
+        assertEquals(16, m.count(9));
+        assertEquals(0, m.count(0));
+        m.setColorIndex(false);
+        assertEquals(16, m.count(9)); // by scanning
+    }
+
+    @Test
+    public void testWeightedSearch() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        CellCosts costs = new CellCosts(1);
+        costs.setColorCost(1, CellCosts.BLOCKED);
+        // all costs are 0 or 1: the same as the BFS distances
+        assertArrayEquals(m.allDistance(new Index2D(0, 0), 1).getMap(),
+                m.weightedDistance(new Index2D(0, 0), costs).getMap());
+
+        // the straight way on an open map is expensive: the detour around it is cheaper, though longer
+        Map open = new Map(7, 3, 0);
+        open.setCyclic(false);
+        CellCosts band = new CellCosts(1);
+        for (int x = 1; x < 6; x++) band.setCellCost(x, 1, 10);
+        PathBuffer path = new PathBuffer();
+        assertEquals(8, open.weightedPath(new Index2D(0, 1), new Index2D(6, 1), band, path));
+        assertEquals(9, path.length());
+        int cost = 0;
+        for (int i = 1; i < path.length(); i++) cost += path.y(i) == 1 && path.x(i) < 6 ? 10 : 1;
+        assertEquals(8, cost);
+        assertEquals(8, open.weightedDistance(new Index2D(0, 1), band).getPixel(6, 1));
+        band.setColorCost(0, 20); // now the straight way is the cheaper: 5*10+20 < 8*20
+        assertEquals(70, open.weightedPath(new Index2D(0, 1), new Index2D(6, 1), band, path));
+        assertEquals(7, path.length());
+
+        m.setPixel(5, 3, 7);
+        m.setPixel(0, 3, 7);
+        assertEquals(3, m.weightedPathToNearest(new Index2D(0, 0), costs, new int[]{7}, path));
+        assertEquals(new Index2D(0, 3), path.get(path.length() - 1));
+        assertEquals(-1, m.weightedPathToNearest(new Index2D(0, 0), costs, new int[]{9}, path));
+        assertNull(m.weightedPath(new Index2D(0, 0), new Index2D(1, 0), costs));
+        costs.setCellCost(0, 0, CellCosts.BLOCKED);
+        assertEquals(-1, m.weightedDistance(new Index2D(0, 0), costs).getPixel(0, 1));
+        assertThrows(RuntimeException.class, () -> costs.setColorCost(2, CellCosts.MAX_COST + 1));
+
+        // path costs are ints: a map on which they could overflow is refused, not searched
+        Map huge = new Map(1024, 1024, 0);
+        CellCosts dear = new CellCosts(CellCosts.MAX_COST);
+        assertThrows(RuntimeException.class, () -> huge.weightedDistance(new Index2D(0, 0), dear));
+        assertEquals(1, huge.weightedDistance(new Index2D(0, 0), new CellCosts(1)).getPixel(1, 0));
+    }
+
+    @Test
+    public void testFill() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        assertEquals(5, m.fill(new Index2D(1, 0), 2), "the wall component of (1,0)");
+        assertEquals(2, m.getPixel(2, 3));
+        assertEquals(1, m.getPixel(4, 4));
+        assertEquals(0, m.fill(new Index2D(1, 0), 2));
+
+        // a ring which is only connected through the borders of a cyclic map
+        int[][] ring = {
+                {5, 0, 5},
+                {0, 0, 0},
+                {5, 0, 5}
+        };
+        Map c = new Map(ring);
+        c.setCyclic(false);
+        assertEquals(1, c.fill(new Index2D(0, 0), 7));
+        c = new Map(ring);
+        c.setCyclic(true);
+        assertEquals(4, c.fill(new Index2D(0, 0), 7));
+        assertEquals(7, c.getPixel(2, 2));
+        assertEquals(0, c.getPixel(1, 1));
+    }
+
+    @Test
+    public void testDistanceOracle() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        DistanceOracle oracle = DistanceOracle.of(m, 1);
+        Map same = new Map(MAZE);
+        same.setCyclic(false);
+        same.setPixel(0, 0, 2);
+        assertSame(oracle, DistanceOracle.of(same, 1), "same walls - cached oracle");
+        assertEquals(20, oracle.size());
+
+        Map2D dist = m.allDistance(new Index2D(0, 0), 1);
+        for (int x = 0; x < m.getWidth(); x++) {
+            for (int y = 0; y < m.getHeight(); y++) {
+                assertEquals(dist.getPixel(x, y), oracle.distance(0, 0, x, y));
+            }
+        }
+        Pixel2D cur = new Index2D(0, 0), target = new Index2D(5, 0);
+        int steps = 0;
+        while (!cur.equals(target)) {
+            cur = oracle.firstStep(cur, target);
+            steps++;
+        }
+        assertEquals(15, steps);
+        assertNull(oracle.firstStep(target, target));
+        assertNull(oracle.firstStep(new Index2D(1, 0), target));
+
+        DistanceOracle.clear();
+        assertEquals(0, DistanceOracle.cachedBytes());
+        assertNotSame(oracle, DistanceOracle.of(m, 1));
+        assertEquals(3 * 20 * 20, DistanceOracle.cachedBytes());
+
+        // two full size oracles (48MB each) do not fit in the cache together: the older one is evicted
+        Map big = new Map(64, 64, 0);
+        DistanceOracle first = DistanceOracle.of(big, 1);
+        big.setPixel(0, 0, 1);
+        DistanceOracle.of(big, 1);
+        assertTrue(DistanceOracle.cachedBytes() <= DistanceOracle.CACHE_BYTES);
+        big.setPixel(0, 0, 0);
+        assertNotSame(first, DistanceOracle.of(big, 1));
+        DistanceOracle.clear();
+    }
+
+    @Test
+    public void testMultiSourceDistance() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        Pixel2D[] sources = {new Index2D(0, 0), new Index2D(5, 4), new Index2D(1, 1), null};
+        NearestSource field = m.multiSourceDistance(sources, 1);
+        Map2D d0 = m.allDistance(sources[0], 1), d1 = m.allDistance(sources[1], 1);
+        for (int x = 0; x < m.getWidth(); x++) {
+            for (int y = 0; y < m.getHeight(); y++) {
+                int a = d0.getPixel(x, y), b = d1.getPixel(x, y);
+                if (a == -1) {
+                    assertEquals(-1, field.getDistance(x, y));
+                    assertEquals(-1, field.getOwner(x, y));
+                    continue;
+                }
+                assertEquals(Math.min(a, b), field.getDistance(x, y));
+                assertEquals(a <= b ? 0 : 1, field.getOwner(x, y), "owner of (" + x + "," + y + ")");
+            }
+        }
+    }
+
+    @Test
+    public void testNearestOfColor() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        m.setPixel(0, 3, 5);
+        m.setPixel(2, 0, 5);
+        m.setPixel(5, 4, 5);
+        Pixel2D start = new Index2D(0, 0);
+
+        NearestTargets near = m.nearestOfColor(start, 5, 2, 1);
+        assertEquals(2, near.size());
+        assertEquals(new Index2D(0, 3), near.getTarget(0));
+        assertEquals(3, near.getDistance(0));
+        assertEquals(new Index2D(2, 0), near.getTarget(1));
+        assertEquals(12, near.getDistance(1));
+        assertEquals(new Index2D(0, 1), near.getFirstStep(1));
+        assertTrue(m.lastSearchVisited() < 16); // stopped before the far end of the maze
+
+        near = m.nearestOfColor(new Index2D(3, 3), 5, 10, 1);
+        assertEquals(3, near.size()); // fewer than k can be reached
+        Map2D dist = m.allDistance(new Index2D(3, 3), 1);
+        for (int i = 0; i < near.size(); i++) {
+            Pixel2D t = near.getTarget(i);
+            assertEquals(dist.getPixel(t), near.getDistance(i));
+            assertEquals(near.getDistance(i) - 1, m.allDistance(near.getFirstStep(i), 1).getPixel(t));
+        }
+
+        assertEquals(0, m.nearestOfColor(new Index2D(1, 0), 5, 1, 1).size()); // start is an obstacle
+        assertEquals(0, m.nearestOfColor(start, 7, 1, 1).size());
+        assertThrows(RuntimeException.class, () -> m.nearestOfColor(start, 5, 0, 1));
+    }
+
+    @Test
+    public void testDistanceField() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        DistanceField field = new DistanceField(m, new Index2D(0, 0), 1);
+        assertFieldEquals(m.allDistance(new Index2D(0, 0), 1), field);
+
+        // walk the source along the maze path, then close and reopen the corridor behind it
+        Pixel2D[] path = m.shortestPath(new Index2D(0, 0), new Index2D(5, 0), 1);
+        for (Pixel2D p : path) {
+            field.moveSource(p);
+            assertFieldEquals(m.allDistance(p, 1), field);
+        }
+        Pixel2D gate = new Index2D(1, 4);
+        m.setPixel(gate, 1);
+        field.cellChanged(gate);
+        assertFieldEquals(m.allDistance(new Index2D(5, 0), 1), field);
+        assertEquals(-1, field.getDistance(0, 0));
+        m.setPixel(gate, 0);
+        field.cellChanged(gate);
+        assertFieldEquals(m.allDistance(new Index2D(5, 0), 1), field);
+        assertEquals(15, field.getDistance(0, 0));
+    }
+
+    @Test
+    public void testComponents() {
+        Map m = new Map(MAZE);
+        m.setCyclic(false);
+        Pixel2D a = new Index2D(0, 0), b = new Index2D(5, 0);
+        assertEquals(1, m.componentCount(1));
+        assertEquals(20, m.componentSize(a, 1));
+        assertTrue(m.isConnected(a, b, 1));
+
+        m.setPixel(1, 4, 1); // closes the only gate out of the first column
+        assertEquals(2, m.componentCount(1));
+        assertEquals(5, m.componentSize(a, 1));
+        assertEquals(14, m.componentSize(b, 1));
+        assertEquals(0, m.componentSize(new Index2D(1, 0), 1));
+        assertFalse(m.isConnected(a, b, 1));
+        assertNull(m.shortestPath(a, b, 1));
+        assertEquals(0, m.lastSearchVisited()); // rejected by the labels, no search
+
+        m.setPixel(1, 4, 0);
+        assertTrue(m.isConnected(a, b, 1));
+        assertEquals(16, m.shortestPath(a, b, 1).length);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        Path file = Files.createTempFile("map", ".i2mp");
+        try {
+            Map m = new Map(MAZE);
+            m.setCyclic(false);
+            MapIO.save(m, file);
+            assertEquals(16 + 30, Files.size(file)); // one byte per cell
+            Map loaded = MapIO.load(file);
+            assertArrayEquals(MAZE, loaded.getMap());
+            assertFalse(loaded.isCyclic());
+            assertEquals(16, loaded.shortestPath(new Index2D(0, 0), new Index2D(5, 0), 1).length);
+
+            for (int v : new int[]{-1000, 70000}) { // 2 and 4 bytes per cell
+                m.setPixel(4, 4, v);
+                m.setCyclic(true);
+                MapIO.save(m, file);
+                loaded = MapIO.load(file);
+                assertArrayEquals(m.getMap(), loaded.getMap());
+                assertTrue(loaded.isCyclic());
+            }
+
+            // an old .bit file: a serialized int[][]
+            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+                out.writeObject(MAZE);
+            }
+            assertArrayEquals(MAZE, MapIO.importBit(file).getMap());
+            assertThrows(RuntimeException.class, () -> MapIO.load(file)); // no deserialization in load
+
+            // anything but an int[][] is rejected before it is built
+            try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+                out.writeObject(new ArrayList<>(List.of(MAZE)));
+            }
+            assertThrows(RuntimeException.class, () -> MapIO.importBit(file));
+
+            Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17});
+            assertThrows(RuntimeException.class, () -> MapIO.load(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void assertFieldEquals(Map2D expected, DistanceField field) {
+        assertArrayEquals(expected.getMap(), field.toMap().getMap());
+    }
+}
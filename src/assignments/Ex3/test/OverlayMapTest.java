@@ -0,0 +1,88 @@
+package assignments.Ex3.test;
+
+import assignments.Ex3.Index2D;
+import assignments.Ex3.Map;
+import assignments.Ex3.NearestTargets;
+import assignments.Ex3.OverlayMap;
+import assignments.Ex3.Pixel2D;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit tests for the OverlayMap class.
+ */
+public class OverlayMapTest {
+
+    @Test
+    public void testWritesStayInTheOverlay() {
+        int[][] arr = new int[6][5];
+        Map base = new Map(arr);
+        OverlayMap o = new OverlayMap(base);
+        o.setPixel(2, 3, 1);
+        o.setPixel(2, 3, 4);
+        o.setPixel(0, 0, 7);
+        assertEquals(4, o.getPixel(2, 3));
+        assertEquals(0, base.getPixel(2, 3));
+        assertEquals(2, o.changes());
+        int[][] expected = new int[6][5];
+        expected[2][3] = 4;
+        expected[0][0] = 7;
+        assertArrayEquals(expected, o.getMap());
+
+        o.reset();
+        assertEquals(0, o.changes());
+        assertArrayEquals(arr, o.getMap());
+        assertEquals(30, o.fill(new Index2D(0, 0), 2));
+        assertArrayEquals(new int[6][5], base.getMap());
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> o.getPixel(6, 0));
+    }
+
+    @Test
+    public void testPathsSeeThePaintedCells() {
+        int[][] arr = new int[10][10];
+        for (int y = 0; y < 9; y++) arr[5][y] = 1; // a wall with a gap at y=9
+        Map base = new Map(arr);
+        base.setCyclic(false);
+        OverlayMap o = new OverlayMap(base);
+        Pixel2D a = new Index2D(0, 0), b = new Index2D(9, 0);
+        assertEquals(28, o.shortestPath(a, b, 1).length);
+
+        o.setPixel(4, 9, 1); // blocks the way to the gap
+        assertNull(o.shortestPath(a, b, 1));
+        assertEquals(-1, o.allDistance(a, 1).getPixel(9, 0));
+        assertEquals(28, base.shortestPath(a, b, 1).length);
+
+        o.reset();
+        o.setPixel(5, 0, 0); // opens the base wall
+        Map painted = new Map(arr);
+        painted.setCyclic(false);
+        painted.setPixel(5, 0, 0);
+        assertEquals(10, o.shortestPath(a, b, 1).length);
+        assertArrayEquals(painted.allDistance(a, 1).getMap(), o.allDistance(a, 1).getMap());
+    }
+
+    @Test
+    public void testNearestOfColorSeesThePaintedCells() {
+        int[][] arr = new int[10][10];
+        for (int y = 0; y < 9; y++) arr[5][y] = 1; // a wall with a gap at y=9
+        arr[2][0] = 3;
+        arr[9][0] = 3;
+        Map base = new Map(arr);
+        base.setCyclic(false);
+        OverlayMap o = new OverlayMap(base);
+        Pixel2D a = new Index2D(0, 0);
+        assertEquals(new Index2D(2, 0), o.nearestOfColor(a, 3, 1, 1).getTarget(0));
+
+        o.setPixel(2, 0, 1); // a ghost on the nearest one
+        NearestTargets near = o.nearestOfColor(a, 3, 1, 1);
+        assertEquals(new Index2D(9, 0), near.getTarget(0));
+        assertEquals(27, near.getDistance(0));
+        assertEquals(2, base.nearestOfColor(a, 3, 2, 1).size());
+
+        o.setPixel(0, 1, 3); // a new one, not an obstacle
+        near = o.nearestOfColor(a, 3, 1, 1);
+        assertEquals(new Index2D(0, 1), near.getTarget(0));
+        assertEquals(new Index2D(0, 1), near.getFirstStep(0));
+    }
+}
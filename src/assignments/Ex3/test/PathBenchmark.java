@@ -0,0 +1,125 @@
+package assignments.Ex3.test;
+
+import assignments.Ex3.DistanceEngine;
+import assignments.Ex3.Index2D;
+import assignments.Ex3.Map;
+import assignments.Ex3.PathEngine;
+import assignments.Ex3.Pixel2D;
+
+import java.util.Random;
+
+/**
+ * A simple (non JUnit) benchmark which compares the shortestPath engines of Map.
+ * For every map it runs the same random queries with each engine and prints
+ * the average number of visited cells, the average path length and the total time,
+ * then times a few allDistance calls with each of the allDistance engines.
+ * Run it as a plain Java application.
+ */
+public class PathBenchmark {
+    private static final int SIZE = 1000;
+    private static final int QUERIES = 200;
+    private static final int WALL = 1;
+    private static final int DISTANCE_RUNS = 5;
+
+    public static void main(String[] args) {
+        Random rand = new Random(31);
+        run("open", new Map(SIZE, SIZE, 0), false, rand);
+        run("open cyclic", new Map(SIZE, SIZE, 0), true, rand);
+        run("random walls 30%", randomWalls(rand, 0.3), false, rand);
+        run("random walls 30% cyclic", randomWalls(rand, 0.3), true, rand);
+        run("maze (10% extra openings)", maze(rand, 0.1), false, rand);
+    }
+
+    private static void run(String name, Map map, boolean cyclic, Random rand) {
+        map.setCyclic(cyclic);
+        Pixel2D[][] queries = new Pixel2D[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            Pixel2D p1 = freeCell(map, rand);
+            // nearby pairs are the common case in the game: at most 100 cells apart on each axis
+            Pixel2D p2 = new Index2D(clamp(p1.getX() + rand.nextInt(201) - 100), clamp(p1.getY() + rand.nextInt(201) - 100));
+            map.setPixel(p2, 0);
+            queries[i] = new Pixel2D[]{p1, p2};
+        }
+        System.out.println(name + " (" + SIZE + "x" + SIZE + ", " + QUERIES + " queries)");
+        for (PathEngine engine : PathEngine.values()) {
+            long visited = 0, length = 0;
+            long start = System.nanoTime();
+            for (Pixel2D[] q : queries) {
+                Pixel2D[] path = map.shortestPath(q[0], q[1], WALL, engine);
+                visited += map.lastSearchVisited();
+                if (path != null) length += path.length;
+            }
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("  %-14s visited/query: %10d   path/query: %6d   time: %6d ms%n",
+                    engine, visited / QUERIES, length / QUERIES, ms);
+        }
+        for (DistanceEngine engine : DistanceEngine.values()) {
+            long start = System.nanoTime();
+            for (int i = 0; i < DISTANCE_RUNS; i++) map.allDistance(queries[i][0], WALL, engine);
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("  allDistance %-14s reached: %8d   time/run: %6d ms%n",
+                    engine, map.lastSearchVisited(), ms / DISTANCE_RUNS);
+        }
+    }
+
+    private static Map randomWalls(Random rand, double p) {
+        Map map = new Map(SIZE, SIZE, 0);
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                if (rand.nextDouble() < p) map.setPixel(x, y, WALL);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * A maze of 1-wide corridors (randomized DFS over the odd cells), with some extra walls removed to create loops.
+     */
+    private static Map maze(Random rand, double openings) {
+        Map map = new Map(SIZE, SIZE, WALL);
+        int cells = SIZE / 2;
+        int[] stack = new int[cells * cells];
+        boolean[] done = new boolean[cells * cells];
+        int[] dx = {1, -1, 0, 0};
+        int[] dy = {0, 0, 1, -1};
+        int top = 0;
+        stack[top++] = 0;
+        done[0] = true;
+        map.setPixel(1, 1, 0);
+        while (top > 0) {
+            int cur = stack[top - 1];
+            int cx = cur / cells, cy = cur % cells;
+            int first = rand.nextInt(4), next = -1, dir = 0;
+            for (int i = 0; i < 4 && next < 0; i++) {
+                dir = (first + i) % 4;
+                int nx = cx + dx[dir], ny = cy + dy[dir];
+                if (nx >= 0 && nx < cells && ny >= 0 && ny < cells && !done[nx * cells + ny]) next = nx * cells + ny;
+            }
+            if (next < 0) {
+                top--;
+                continue;
+            }
+            done[next] = true;
+            map.setPixel(2 * cx + 1 + dx[dir], 2 * cy + 1 + dy[dir], 0);
+            map.setPixel(2 * (next / cells) + 1, 2 * (next % cells) + 1, 0);
+            stack[top++] = next;
+        }
+        for (int x = 1; x < SIZE - 1; x++) {
+            for (int y = 1; y < SIZE - 1; y++) {
+                if (map.getPixel(x, y) == WALL && rand.nextDouble() < openings) map.setPixel(x, y, 0);
+            }
+        }
+        return map;
+    }
+
+    private static Pixel2D freeCell(Map map, Random rand) {
+        while (true) {
+            Pixel2D p = new Index2D(rand.nextInt(SIZE), rand.nextInt(SIZE));
+            if (map.getPixel(p) != WALL) return p;
+        }
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(SIZE - 1, v));
+    }
+}
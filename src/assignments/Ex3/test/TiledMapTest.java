@@ -0,0 +1,88 @@
+package assignments.Ex3.test;
+
+import assignments.Ex3.Index2D;
+import assignments.Ex3.Map;
+import assignments.Ex3.Map2D;
+import assignments.Ex3.Pixel2D;
+import assignments.Ex3.TiledMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit tests for the TiledMap class.
+ */
+public class TiledMapTest {
+
+    @Test
+    public void testSameResultsAsMap() {
+        // 150x100 crosses tile borders on both axes
+        int[][] arr = new int[150][100];
+        for (int x = 0; x < 150; x++) {
+            for (int y = 0; y < 100; y++) {
+                if ((x % 9 == 4 && y != x % 97) || (y % 13 == 6 && x % 31 == 0)) arr[x][y] = 1;
+            }
+        }
+        for (boolean cyclic : new boolean[]{false, true}) {
+            Map m = new Map(arr);
+            TiledMap t = new TiledMap(arr);
+            m.setCyclic(cyclic);
+            t.setCyclic(cyclic);
+            assertArrayEquals(arr, t.getMap());
+
+            Pixel2D a = new Index2D(0, 0), b = new Index2D(149, 99);
+            assertArrayEquals(m.allDistance(a, 1).getMap(), t.allDistance(a, 1).getMap());
+            Pixel2D[] path = t.shortestPath(a, b, 1);
+            assertEquals(m.shortestPath(a, b, 1).length, path.length);
+            assertEquals(a, path[0]);
+            assertEquals(b, path[path.length - 1]);
+
+            assertEquals(m.fill(new Index2D(70, 50), 2), t.fill(new Index2D(70, 50), 2));
+            assertArrayEquals(m.getMap(), t.getMap());
+        }
+    }
+
+    @Test
+    public void testLazyTilesAndCopyOnWrite() {
+        TiledMap world = new TiledMap(1_000_000, 1_000_000, 0);
+        world.setCyclic(false);
+        assertEquals(0, world.allocatedTiles());
+        assertEquals(0, world.getPixel(999_999, 999_999));
+
+        for (int y = 0; y < 300; y++) world.setPixel(150, y, 1);
+        assertEquals(5, world.allocatedTiles()); // 300 cells of column 150 span 5 tiles
+        world.setPixel(500_000, 500_000, 0); // the init value: no tile
+        assertEquals(5, world.allocatedTiles());
+
+        Pixel2D[] path = world.shortestPath(new Index2D(100, 100), new Index2D(200, 100), 1);
+        assertEquals(501, path.length); // around the end of the wall at y=300
+
+        TiledMap copy = new TiledMap(world);
+        copy.setPixel(150, 0, 7);
+        assertEquals(1, world.getPixel(150, 0));
+        assertEquals(7, copy.getPixel(150, 0));
+        world.setPixel(150, 1, 8);
+        assertEquals(1, copy.getPixel(150, 1));
+        TiledMap second = new TiledMap(copy), third = new TiledMap(second);
+        second.setPixel(150, 2, 9);
+        third.setPixel(150, 2, 10);
+        copy.init(1, 1, 0); // drops its share: second and third own their tiles now
+        second.setPixel(150, 3, 11);
+        assertEquals(9, second.getPixel(150, 2));
+        assertEquals(10, third.getPixel(150, 2));
+        assertEquals(1, third.getPixel(150, 3));
+        assertEquals(7, third.getPixel(150, 0));
+        assertEquals(1, world.getPixel(150, 2));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> world.getPixel(1_000_000, 0));
+    }
+
+    @Test
+    public void testDistancesAreSparse() {
+        TiledMap world = new TiledMap(100_000, 100_000, 1);
+        for (int x = 10; x < 200; x++) world.setPixel(x, 20, 0); // a corridor in a solid world
+        Map2D dist = world.allDistance(new Index2D(10, 20), 1);
+        assertEquals(189, dist.getPixel(199, 20));
+        assertEquals(-1, dist.getPixel(50_000, 50_000));
+        assertEquals(4, ((TiledMap) dist).allocatedTiles()); // x=10..199 spans 4 tiles
+    }
+}